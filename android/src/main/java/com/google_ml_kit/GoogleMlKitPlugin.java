@@ -16,16 +16,22 @@ public class GoogleMlKitPlugin implements FlutterPlugin {
     /// when the Flutter Engine is detached from the Activity
     private MethodChannel channel;
     private static String channelName = "google_ml_kit";
+    // Carries batch progress to dart, apart from the main channel whose dart side only calls in.
+    private static String poseBatchProgressChannelName = channelName + "/pose_batch_progress";
 
     public static void registerWith(Registrar registrar) {
         final MethodChannel channel = new MethodChannel(registrar.messenger(), channelName);
-        channel.setMethodCallHandler(new MlKitMethodCallHandler(registrar.context()));
+        final MethodChannel poseBatchProgressChannel =
+                new MethodChannel(registrar.messenger(), poseBatchProgressChannelName);
+        channel.setMethodCallHandler(new MlKitMethodCallHandler(registrar.context(), poseBatchProgressChannel));
     }
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
         channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), channelName);
-        channel.setMethodCallHandler(new MlKitMethodCallHandler(flutterPluginBinding.getApplicationContext()));
+        MethodChannel poseBatchProgressChannel =
+                new MethodChannel(flutterPluginBinding.getBinaryMessenger(), poseBatchProgressChannelName);
+        channel.setMethodCallHandler(new MlKitMethodCallHandler(flutterPluginBinding.getApplicationContext(), poseBatchProgressChannel));
     }
 
     @Override
@@ -19,10 +19,10 @@ public class MlKitMethodCallHandler implements MethodChannel.MethodCallHandler {
 
     private final Map<String, ApiDetectorInterface> handlers;
 
-    public MlKitMethodCallHandler(Context context) {
+    public MlKitMethodCallHandler(Context context, MethodChannel poseBatchProgressChannel) {
         List<ApiDetectorInterface> detectors = new ArrayList<ApiDetectorInterface>(
                 Arrays.asList(
-                        new PoseDetector(context),
+                        new PoseDetector(context, poseBatchProgressChannel),
                         new CustomRemoteModelManager()
                 ));
 
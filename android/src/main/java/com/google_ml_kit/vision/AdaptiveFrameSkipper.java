@@ -0,0 +1,146 @@
+package com.google_ml_kit.vision;
+
+import java.util.Map;
+
+// Skips detection and classification of streamed frames while the subject holds still.
+//
+// The motion of the pose is estimated from the landmarks of consecutive detected frames: the mean
+// displacement of the landmarks found in both, relative to the size of the pose. Once the motion
+// stayed below the threshold for a few detected frames the pose is considered static, and only
+// every (maxReusedFrames + 1)th frame is detected, the frames in between reusing the previous
+// result. As soon as a detected frame shows motion again every frame is detected.
+// Results are only reused for frames of the method that detected them, so a session switching
+// between detecting, classifying and counting reps never answers with the other method's result.
+public class AdaptiveFrameSkipper {
+    // Landmarks less likely than this to be in the frame don't count towards the motion.
+    private static final float MIN_LIKELIHOOD = 0.5f;
+    // Fewer reliable landmarks than this make the motion unknown, which counts as moving.
+    private static final int MIN_LANDMARKS = 8;
+
+    public static class Config {
+        public static final float DEFAULT_MOTION_THRESHOLD = 0.02f;
+        public static final int DEFAULT_SETTLE_FRAMES = 5;
+        public static final int DEFAULT_MAX_REUSED_FRAMES = 2;
+
+        // Motion between detected frames, relative to the pose size, below which the pose counts
+        // as still. Together with settleFrames this is the quality budget.
+        final float motionThreshold;
+        // Detected frames the pose must stay still for before frames are reused.
+        final int settleFrames;
+        // Consecutive frames answered with a reused result at most, the battery budget. While
+        // still, one frame in maxReusedFrames + 1 is detected.
+        final int maxReusedFrames;
+
+        public Config(float motionThreshold, int settleFrames, int maxReusedFrames) {
+            this.motionThreshold = motionThreshold;
+            this.settleFrames = Math.max(1, settleFrames);
+            this.maxReusedFrames = Math.max(0, maxReusedFrames);
+        }
+
+        // Reads the "frameSkipping" option, a map of the parameters. Returns null when absent,
+        // which disables skipping. Missing parameters take their defaults.
+        static Config fromOption(Object option) {
+            if (!(option instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> map = (Map<?, ?>) option;
+            Object motionThreshold = map.get("motionThreshold");
+            Object settleFrames = map.get("settleFrames");
+            Object maxReusedFrames = map.get("maxReusedFrames");
+            return new Config(
+                    motionThreshold instanceof Number
+                            ? ((Number) motionThreshold).floatValue() : DEFAULT_MOTION_THRESHOLD,
+                    settleFrames instanceof Number
+                            ? ((Number) settleFrames).intValue() : DEFAULT_SETTLE_FRAMES,
+                    maxReusedFrames instanceof Number
+                            ? ((Number) maxReusedFrames).intValue() : DEFAULT_MAX_REUSED_FRAMES);
+        }
+    }
+
+    private Config config;
+    private PoseWithClassification lastResult;
+    // Method call that detected lastResult.
+    private String lastMethod;
+    private int stillFrames;
+    private int reusedFrames;
+
+    // Sets the budgets, null disables skipping.
+    public synchronized void setConfig(Config config) {
+        this.config = config;
+        if (config == null) {
+            reset();
+        }
+    }
+
+    // Called when a frame of the given method arrives. Returns the result to answer it with when it
+    // can be skipped, null when it has to be detected.
+    public synchronized PoseWithClassification reuse(String method) {
+        if (lastResult != null && !method.equals(lastMethod)) {
+            reset();
+            return null;
+        }
+        if (config != null && lastResult != null
+                && stillFrames >= config.settleFrames && reusedFrames < config.maxReusedFrames) {
+            reusedFrames++;
+            return lastResult;
+        }
+        reusedFrames = 0;
+        return null;
+    }
+
+    // Called with the result of every frame the given method detected.
+    public synchronized void update(String method, PoseWithClassification result) {
+        if (config == null) {
+            return;
+        }
+        PoseLandmarks landmarks = result.getLandmarks();
+        if (landmarks == null) {
+            reset();
+            return;
+        }
+        if (lastResult != null && method.equals(lastMethod)
+                && motion(lastResult.getLandmarks(), landmarks) < config.motionThreshold) {
+            stillFrames++;
+        } else {
+            stillFrames = 0;
+        }
+        lastResult = result;
+        lastMethod = method;
+    }
+
+    public synchronized void reset() {
+        lastResult = null;
+        lastMethod = null;
+        stillFrames = 0;
+        reusedFrames = 0;
+    }
+
+    // Mean displacement of the landmarks reliably found in both frames, relative to the larger
+    // side of their bounding box in the current frame. Infinite when too few landmarks were found.
+    static float motion(PoseLandmarks previous, PoseLandmarks current) {
+        float displacement = 0;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        int count = 0;
+        for (int type = 0; type < PoseLandmarks.NUM_LANDMARKS; type++) {
+            if (previous.getLikelihood(type) < MIN_LIKELIHOOD || current.getLikelihood(type) < MIN_LIKELIHOOD) {
+                continue;
+            }
+            float x = current.getX(type);
+            float y = current.getY(type);
+            float dx = x - previous.getX(type);
+            float dy = y - previous.getY(type);
+            displacement += (float) Math.sqrt(dx * dx + dy * dy);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+            count++;
+        }
+        float size = Math.max(maxX - minX, maxY - minY);
+        if (count < MIN_LANDMARKS || size <= 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return displacement / count / size;
+    }
+}
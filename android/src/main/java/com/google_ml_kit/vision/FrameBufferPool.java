@@ -0,0 +1,120 @@
+package com.google_ml_kit.vision;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Reusable buffers for the NV21 frames the plugin builds before detection, so streaming doesn't
+// allocate a new multi-megabyte buffer for every frame.
+//
+// Buffers come in size classes, eight per doubling of size, so frames of slightly different sizes,
+// e.g. crops following a person around, share buffers while wasting at most an eighth of one.
+// At most maxBuffersPerClass buffers are kept per class and maxRetainedBytes over all classes;
+// when full, the buffers of the least recently used classes are let go first.
+public class FrameBufferPool {
+    private static final int DEFAULT_MAX_BUFFERS_PER_CLASS = 4;
+    private static final long DEFAULT_MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+    private static final int MIN_CLASS_SIZE = 4096;
+
+    private final int maxBuffersPerClass;
+    private final long maxRetainedBytes;
+    // Free buffers by class size, least recently used class first.
+    private final LinkedHashMap<Integer, ArrayDeque<ByteBuffer>> free = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes;
+    private long hits;
+    private long misses;
+
+    public FrameBufferPool() {
+        this(DEFAULT_MAX_BUFFERS_PER_CLASS, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    public FrameBufferPool(int maxBuffersPerClass, long maxRetainedBytes) {
+        this.maxBuffersPerClass = maxBuffersPerClass;
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    // Smallest class size holding size bytes.
+    static int classSize(int size) {
+        if (size <= MIN_CLASS_SIZE) {
+            return MIN_CLASS_SIZE;
+        }
+        int step = Integer.highestOneBit(size - 1) / 8;
+        return (size + step - 1) / step * step;
+    }
+
+    // Returns a heap buffer with position 0 and limit size, with undefined contents. Its backing
+    // array starts at offset 0 and may be longer than size.
+    public synchronized ByteBuffer acquire(int size) {
+        int classSize = classSize(size);
+        ArrayDeque<ByteBuffer> buffers = free.get(classSize);
+        ByteBuffer buffer = buffers == null ? null : buffers.pollLast();
+        if (buffer != null) {
+            hits++;
+            retainedBytes -= classSize;
+        } else {
+            misses++;
+            buffer = ByteBuffer.allocate(classSize);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    // Hands a buffer back once nothing reads it anymore.
+    public synchronized void release(ByteBuffer buffer) {
+        int classSize = buffer.capacity();
+        if (classSize > maxRetainedBytes) {
+            // Evicting everything else wouldn't make room for it.
+            return;
+        }
+        ArrayDeque<ByteBuffer> buffers = free.get(classSize);
+        if (buffers == null) {
+            buffers = new ArrayDeque<>();
+            free.put(classSize, buffers);
+        }
+        if (buffers.size() >= maxBuffersPerClass) {
+            return;
+        }
+        evict(maxRetainedBytes - classSize, classSize);
+        if (retainedBytes + classSize > maxRetainedBytes) {
+            return;
+        }
+        buffers.addLast(buffer);
+        retainedBytes += classSize;
+    }
+
+    // Lets go of buffers of other classes, least recently used first, until at most maxBytes
+    // are retained.
+    private void evict(long maxBytes, int keepClassSize) {
+        for (Iterator<Map.Entry<Integer, ArrayDeque<ByteBuffer>>> it = free.entrySet().iterator();
+             it.hasNext() && retainedBytes > maxBytes; ) {
+            Map.Entry<Integer, ArrayDeque<ByteBuffer>> entry = it.next();
+            if (entry.getKey() == keepClassSize) continue;
+            ArrayDeque<ByteBuffer> buffers = entry.getValue();
+            while (!buffers.isEmpty() && retainedBytes > maxBytes) {
+                buffers.pollFirst();
+                retainedBytes -= entry.getKey();
+            }
+            if (buffers.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    // Acquires served from the pool, acquires that allocated and bytes currently kept.
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("hits", hits);
+        map.put("misses", misses);
+        map.put("retainedBytes", retainedBytes);
+        return map;
+    }
+}
@@ -0,0 +1,219 @@
+package com.google_ml_kit.vision;
+
+import android.content.Context;
+
+import com.google.mlkit.vision.common.InputImage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodChannel;
+
+// Prepares camera frames for detection: crops them to the region of interest, shrinks them to a
+// target long edge and rotates them upright, in one pass into a pooled buffer.
+//
+// Pose detection doesn't need the full resolution of 1080p or 4K cameras, and the pixels it skips
+// are pixels ml kit doesn't have to convert and scan. Frames are shrunk by the largest integer
+// factor keeping their long edge at least the target, so every output pixel is the mean of a
+// whole box of source pixels.
+//
+// Every NV21 frame built here, including frames assembled from separate planes, lives in a buffer
+// of the pool until the frame's PreparedImage is released. Whole NV21 frames needing no change
+// are handed to ml kit in the array they arrived in, and image files go through unchanged.
+public class FramePreprocessor {
+
+    public static class Config {
+        public static final int DEFAULT_TARGET_LONG_EDGE = 640;
+
+        // Long edge in pixels frames are shrunk towards, after cropping.
+        final int targetLongEdge;
+        // Whether frames are rotated upright, saving ml kit from doing so.
+        final boolean normalizeRotation;
+
+        public Config(int targetLongEdge, boolean normalizeRotation) {
+            this.targetLongEdge = Math.max(2, targetLongEdge);
+            this.normalizeRotation = normalizeRotation;
+        }
+
+        // Reads the "downscale" option, a map of the parameters. Returns null when absent, which
+        // disables the stage. Missing parameters take their defaults.
+        static Config fromOption(Object option) {
+            if (!(option instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> map = (Map<?, ?>) option;
+            Object targetLongEdge = map.get("targetLongEdge");
+            return new Config(
+                    targetLongEdge instanceof Number ? ((Number) targetLongEdge).intValue() : DEFAULT_TARGET_LONG_EDGE,
+                    !Boolean.FALSE.equals(map.get("normalizeRotation")));
+        }
+    }
+
+    private final FrameBufferPool pool;
+
+    public FramePreprocessor(FrameBufferPool pool) {
+        this.pool = pool;
+    }
+
+    // Returns the image to detect, or null after answering result with the error.
+    // crop is the region of interest in frame buffer coordinates, null for the full frame.
+    // config is null when frames are neither shrunk nor rotated.
+    public PreparedImage prepare(Map<String, Object> imageData,
+                                 Context context,
+                                 RoiTracker.Crop crop,
+                                 Config config,
+                                 MethodChannel.Result result) {
+        if (!InputImageConverter.isCameraFrame(imageData)) {
+            InputImage inputImage = InputImageConverter.getInputImageFromData(imageData, context, result);
+            return inputImage == null ? null : PreparedImage.of(inputImage);
+        }
+        try {
+            return prepareCameraFrame(imageData, crop, config);
+        } catch (IllegalArgumentException e) {
+            result.error("InputImageConverterError", e.getMessage(), null);
+            return null;
+        }
+    }
+
+    // Largest factor keeping the long edge at least targetLongEdge, and both sides at least 2.
+    static int scaleFactor(int width, int height, int targetLongEdge) {
+        int factor = Math.max(1, Math.max(width, height) / targetLongEdge);
+        while (factor > 1 && (YuvDownscaler.scaledSize(width, factor) == 0
+                || YuvDownscaler.scaledSize(height, factor) == 0)) {
+            factor--;
+        }
+        return factor;
+    }
+
+    private PreparedImage prepareCameraFrame(Map<String, Object> imageData, RoiTracker.Crop crop, Config config) {
+        int frameWidth = InputImageConverter.getFrameWidth(imageData);
+        int frameHeight = InputImageConverter.getFrameHeight(imageData);
+        int rotation = InputImageConverter.getFrameRotation(imageData);
+        int width = crop == null ? frameWidth : crop.width;
+        int height = crop == null ? frameHeight : crop.height;
+        int factor = config == null ? 1 : scaleFactor(width, height, config.targetLongEdge);
+        boolean rotate = config != null && config.normalizeRotation && rotation != 0;
+        boolean bytes = "bytes".equals(imageData.get("type"));
+
+        if (factor == 1 && !rotate) {
+            if (bytes && crop == null) {
+                return PreparedImage.of(InputImage.fromByteArray((byte[]) imageData.get("bytes"),
+                        frameWidth, frameHeight, rotation, InputImage.IMAGE_FORMAT_NV21));
+            }
+            return copy(imageData, bytes, crop, frameWidth, frameHeight, rotation);
+        }
+        return downscale(imageData, bytes, crop, frameWidth, frameHeight, rotation, factor, rotate);
+    }
+
+    // Copies the crop, or the whole frame when assembling planes, into a pooled NV21 buffer.
+    private PreparedImage copy(Map<String, Object> imageData, boolean bytes, RoiTracker.Crop crop,
+                               int frameWidth, int frameHeight, int rotation) {
+        int left = crop == null ? 0 : crop.left;
+        int top = crop == null ? 0 : crop.top;
+        int width = crop == null ? frameWidth : crop.width;
+        int height = crop == null ? frameHeight : crop.height;
+
+        ByteBuffer out = pool.acquire(YuvPlaneConverter.nv21Size(width, height));
+        try {
+            if (bytes) {
+                YuvPlaneConverter.cropNv21((byte[]) imageData.get("bytes"), frameWidth, frameHeight,
+                        left, top, width, height, out);
+            } else {
+                Planes planes = new Planes(imageData);
+                YuvPlaneConverter.toNv21(planes.y, planes.yRowStride,
+                        planes.u, planes.v, planes.uvRowStride, planes.uvPixelStride,
+                        left, top, width, height, out);
+            }
+        } catch (RuntimeException e) {
+            pool.release(out);
+            throw invalidFrame(e);
+        }
+        out.rewind();
+
+        InputImage inputImage = InputImage.fromByteBuffer(out, width, height, rotation, InputImage.IMAGE_FORMAT_NV21);
+        return new PreparedImage(inputImage, 1,
+                crop == null ? 0 : crop.offsetX, crop == null ? 0 : crop.offsetY,
+                pool, out);
+    }
+
+    private PreparedImage downscale(Map<String, Object> imageData, boolean bytes, RoiTracker.Crop crop,
+                                    int frameWidth, int frameHeight, int rotation,
+                                    int factor, boolean rotate) {
+        int left = crop == null ? 0 : crop.left;
+        int top = crop == null ? 0 : crop.top;
+        int width = crop == null ? frameWidth & ~1 : crop.width;
+        int height = crop == null ? frameHeight & ~1 : crop.height;
+        int outWidth = YuvDownscaler.scaledSize(width, factor);
+        int outHeight = YuvDownscaler.scaledSize(height, factor);
+
+        ByteBuffer out = pool.acquire(YuvPlaneConverter.nv21Size(outWidth, outHeight));
+        try {
+            if (bytes) {
+                // The planes inside an NV21 array: luma, then interleaved V and U rows.
+                byte[] nv21 = (byte[]) imageData.get("bytes");
+                int chromaStart = frameWidth * frameHeight;
+                int chromaRowStride = 2 * ((frameWidth + 1) / 2);
+                if (nv21.length < YuvPlaneConverter.nv21Size(frameWidth, frameHeight)) {
+                    throw new IllegalArgumentException("Frame buffer too small");
+                }
+                YuvDownscaler.downscaleToNv21(
+                        nv21, 0, frameWidth,
+                        nv21, chromaStart + 1, nv21, chromaStart, chromaRowStride, 2,
+                        left, top, width, height, factor, rotate ? rotation : 0, out.array());
+            } else {
+                Planes planes = new Planes(imageData);
+                YuvDownscaler.downscaleToNv21(
+                        planes.y, 0, planes.yRowStride,
+                        planes.u, 0, planes.v, 0, planes.uvRowStride, planes.uvPixelStride,
+                        left, top, width, height, factor, rotate ? rotation : 0, out.array());
+            }
+        } catch (RuntimeException e) {
+            pool.release(out);
+            throw invalidFrame(e);
+        }
+
+        boolean rotatedSideways = rotate && (rotation == 90 || rotation == 270);
+        int imageWidth = rotatedSideways ? outHeight : outWidth;
+        int imageHeight = rotatedSideways ? outWidth : outHeight;
+        InputImage inputImage = InputImage.fromByteBuffer(out, imageWidth, imageHeight, rotate ? 0 : rotation,
+                InputImage.IMAGE_FORMAT_NV21);
+        // Rows and columns of the region past the last whole box are left out, which moves the
+        // region's far edges and with them the upright offset for rotated frames.
+        RoiTracker.Crop covered = new RoiTracker.Crop(
+                left, top, outWidth * factor, outHeight * factor, frameWidth, frameHeight, rotation);
+        return new PreparedImage(inputImage, factor, covered.offsetX, covered.offsetY, pool, out);
+    }
+
+    private static IllegalArgumentException invalidFrame(RuntimeException e) {
+        return e instanceof IllegalArgumentException
+                ? (IllegalArgumentException) e
+                : new IllegalArgumentException("Invalid frame: " + e, e);
+    }
+
+    // The separate Y/U/V planes of a YUV_420_888 camera image with their strides.
+    private static class Planes {
+        final byte[] y;
+        final byte[] u;
+        final byte[] v;
+        final int yRowStride;
+        final int uvRowStride;
+        final int uvPixelStride;
+
+        Planes(Map<String, Object> imageData) {
+            List<byte[]> planes = (List<byte[]>) imageData.get("planes");
+            List<Map<String, Object>> planeData = (List<Map<String, Object>>)
+                    ((Map<String, Object>) imageData.get("metadata")).get("planeData");
+            if (planes == null || planes.size() != 3 || planeData == null || planeData.size() != 3) {
+                throw new IllegalArgumentException("Expected Y, U and V planes");
+            }
+            y = planes.get(0);
+            u = planes.get(1);
+            v = planes.get(2);
+            yRowStride = (int) planeData.get(0).get("bytesPerRow");
+            uvRowStride = (int) planeData.get(1).get("bytesPerRow");
+            uvPixelStride = planeData.get(1).get("bytesPerPixel") == null
+                    ? 1 : (int) planeData.get(1).get("bytesPerPixel");
+        }
+    }
+}
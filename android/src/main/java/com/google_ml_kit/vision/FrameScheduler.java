@@ -0,0 +1,84 @@
+package com.google_ml_kit.vision;
+
+// Keeps at most a fixed number of streamed frames in flight through detection and classification.
+// When all slots are busy the newest frame waits in a single pending slot, and a frame that was
+// already waiting there is dropped, so the latest frame always wins and latency stays bounded.
+public class FrameScheduler {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 2;
+
+    public interface Frame {
+        // Starts processing the frame. onDone must be run exactly once when it has finished,
+        // whether it succeeded or failed.
+        void run(Runnable onDone);
+
+        // Answers the frame without processing it, as it has been superseded by a newer one.
+        void drop();
+    }
+
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int inFlight;
+    private Frame pending;
+    private long droppedFrames;
+
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public void submit(Frame frame) {
+        Frame superseded = null;
+        boolean start = false;
+        synchronized (this) {
+            if (inFlight < maxInFlight) {
+                inFlight++;
+                start = true;
+            } else {
+                superseded = pending;
+                pending = frame;
+                if (superseded != null) droppedFrames++;
+            }
+        }
+        // Callbacks run outside the lock as they call back into flutter and ml kit.
+        if (superseded != null) superseded.drop();
+        if (start) start(frame);
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    // Drops the pending frame, if any, and resets the drop counter. Frames already in flight
+    // complete normally.
+    public void reset() {
+        Frame superseded;
+        synchronized (this) {
+            superseded = pending;
+            pending = null;
+            droppedFrames = 0;
+        }
+        if (superseded != null) superseded.drop();
+    }
+
+    private void start(Frame frame) {
+        try {
+            frame.run(this::onFrameDone);
+        } catch (RuntimeException e) {
+            onFrameDone();
+            throw e;
+        }
+    }
+
+    private void onFrameDone() {
+        Frame next;
+        synchronized (this) {
+            next = pending;
+            pending = null;
+            // The slot is handed straight to the pending frame, if there is one.
+            if (next == null) inFlight--;
+        }
+        if (next != null) start(next);
+    }
+}
@@ -8,6 +8,8 @@ import com.google.mlkit.vision.common.InputImage;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
 
 import io.flutter.plugin.common.MethodChannel;
@@ -18,31 +20,79 @@ public class InputImageConverter {
     static InputImage getInputImageFromData(Map<String, Object> imageData,
                                             Context context,
                                             MethodChannel.Result result) {
+        try {
+            return getInputImage(imageData, context);
+        } catch (IOException e) {
+            Log.e("ImageError", "Getting Image failed");
+            e.printStackTrace();
+            result.error("InputImageConverterError", e.toString(), null);
+            return null;
+        } catch (IllegalArgumentException e) {
+            result.error("InputImageConverterError", e.getMessage(), null);
+            return null;
+        }
+    }
+
+    //Returns an [InputImage] from the image data received, throwing if it can't be created
+    static InputImage getInputImage(Map<String, Object> imageData, Context context) throws IOException {
         //Differentiates whether the image data is a path for a image file or contains image data in form of bytes
         String model = (String) imageData.get("type");
-        InputImage inputImage;
-        if (model.equals("file")) {
-            try {
-                inputImage = InputImage.fromFilePath(context, Uri.fromFile(new File(((String) imageData.get("path")))));
-                return inputImage;
-            } catch (IOException e) {
-                Log.e("ImageError", "Getting Image failed");
-                e.printStackTrace();
-                result.error("InputImageConverterError", e.toString(), null);
-                return null;
-            }
-        } else if (model.equals("bytes")) {
+        if ("file".equals(model)) {
+            return InputImage.fromFilePath(context, Uri.fromFile(new File(((String) imageData.get("path")))));
+        } else if ("bytes".equals(model)) {
             Map<String, Object> metaData = (Map<String, Object>) imageData.get("metadata");
-            inputImage = InputImage.fromByteArray((byte[]) imageData.get("bytes"),
+            return InputImage.fromByteArray((byte[]) imageData.get("bytes"),
                     (int) (double) metaData.get("width"),
                     (int) (double) metaData.get("height"),
                     (int) metaData.get("rotation"),
                     InputImage.IMAGE_FORMAT_NV21);
-            return inputImage;
+        } else if ("planes".equals(model)) {
+            return getInputImageFromPlanes(imageData);
         } else {
-            result.error("InputImageConverterError", "Invalid Input Image", null);
-            return null;
+            throw new IllegalArgumentException("Invalid Input Image");
+        }
+    }
+
+    //Returns whether the image data is a camera frame, bytes or planes, rather than a file
+    static boolean isCameraFrame(Map<String, Object> imageData) {
+        Object type = imageData.get("type");
+        return "bytes".equals(type) || "planes".equals(type);
+    }
+
+    static int getFrameWidth(Map<String, Object> imageData) {
+        return (int) (double) ((Map<String, Object>) imageData.get("metadata")).get("width");
+    }
+
+    static int getFrameHeight(Map<String, Object> imageData) {
+        return (int) (double) ((Map<String, Object>) imageData.get("metadata")).get("height");
+    }
+
+    static int getFrameRotation(Map<String, Object> imageData) {
+        return (int) ((Map<String, Object>) imageData.get("metadata")).get("rotation");
+    }
+
+    //Builds an NV21 [InputImage] from the separate Y/U/V planes of a YUV_420_888 camera image
+    private static InputImage getInputImageFromPlanes(Map<String, Object> imageData) {
+        List<byte[]> planes = (List<byte[]>) imageData.get("planes");
+        Map<String, Object> metaData = (Map<String, Object>) imageData.get("metadata");
+        List<Map<String, Object>> planeData = (List<Map<String, Object>>) metaData.get("planeData");
+        if (planes == null || planes.size() != 3 || planeData == null || planeData.size() != 3) {
+            throw new IllegalArgumentException("Expected Y, U and V planes");
         }
+        int width = (int) (double) metaData.get("width");
+        int height = (int) (double) metaData.get("height");
+        int uvPixelStride = planeData.get(1).get("bytesPerPixel") == null
+                ? 1 : (int) planeData.get(1).get("bytesPerPixel");
+
+        ByteBuffer nv21 = ByteBuffer.allocateDirect(YuvPlaneConverter.nv21Size(width, height));
+        YuvPlaneConverter.toNv21(
+                planes.get(0), (int) planeData.get(0).get("bytesPerRow"),
+                planes.get(1), planes.get(2), (int) planeData.get(1).get("bytesPerRow"), uvPixelStride,
+                width, height,
+                nv21);
+        nv21.rewind();
+        return InputImage.fromByteBuffer(nv21, width, height, (int) metaData.get("rotation"),
+                InputImage.IMAGE_FORMAT_NV21);
     }
 
 }
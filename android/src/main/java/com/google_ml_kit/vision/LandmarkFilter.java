@@ -0,0 +1,128 @@
+package com.google_ml_kit.vision;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// Temporal filter removing the frame to frame jitter of streamed landmarks.
+//
+// Each coordinate goes through a One-Euro filter: an exponential low pass whose cutoff frequency
+// rises with the speed of the coordinate, so still landmarks are smoothed strongly while moving
+// ones follow with little lag. Updates are weighted by the landmark's likelihood, so occluded
+// landmarks lean on their history instead of jumping around.
+// The state of a session lives in a few flat arrays. The filter resets when the pose is lost.
+public class LandmarkFilter {
+    private static final int NUM_VALUES = PoseLandmarks.NUM_LANDMARKS * PoseLandmarks.STRIDE;
+    // Likelihood below which a landmark's update weight stops shrinking, so it still follows.
+    private static final float MIN_UPDATE_WEIGHT = 0.1f;
+    // Frames further apart than this restart the filter instead of smoothing across the gap.
+    private static final long MAX_FRAME_GAP_NANOS = 1_000_000_000L;
+    private static final float DEFAULT_FRAME_SECONDS = 1 / 30f;
+
+    // Parameters of the One-Euro filter, see https://gery.casiez.net/1euro/.
+    public static class Config {
+        public static final float DEFAULT_MIN_CUTOFF = 1.0f;
+        public static final float DEFAULT_BETA = 0.007f;
+        public static final float DEFAULT_DERIVATIVE_CUTOFF = 1.0f;
+
+        // Cutoff frequency in Hz of still landmarks. Lower removes more jitter.
+        final float minCutoff;
+        // How fast the cutoff rises with speed in pixels per second. Higher reduces lag.
+        final float beta;
+        // Cutoff frequency in Hz of the speed estimate.
+        final float derivativeCutoff;
+
+        public Config(float minCutoff, float beta, float derivativeCutoff) {
+            this.minCutoff = minCutoff;
+            this.beta = beta;
+            this.derivativeCutoff = derivativeCutoff;
+        }
+
+        // Reads the "landmarkFilter" option, a map of the parameters. Returns null when absent,
+        // which disables filtering. Missing parameters take their defaults.
+        static Config fromOption(Object option) {
+            if (!(option instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> map = (Map<?, ?>) option;
+            return new Config(
+                    floatOrDefault(map.get("minCutoff"), DEFAULT_MIN_CUTOFF),
+                    floatOrDefault(map.get("beta"), DEFAULT_BETA),
+                    floatOrDefault(map.get("derivativeCutoff"), DEFAULT_DERIVATIVE_CUTOFF));
+        }
+
+        private static float floatOrDefault(Object value, float defaultValue) {
+            return value instanceof Number ? ((Number) value).floatValue() : defaultValue;
+        }
+    }
+
+    private Config config;
+    private final float[] values = new float[NUM_VALUES];
+    private final float[] derivatives = new float[NUM_VALUES];
+    private boolean initialized;
+    private long lastTimestampNanos;
+
+    // Sets the parameters, null disables filtering. Filtering state is kept across changes.
+    public synchronized void setConfig(Config config) {
+        this.config = config;
+        if (config == null) {
+            initialized = false;
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return config != null;
+    }
+
+    // Filters the landmarks of a frame received at timestampNanos (System.nanoTime), returning
+    // new landmarks. Returns the landmarks unchanged when disabled, and null when no pose was found.
+    public synchronized PoseLandmarks filter(PoseLandmarks landmarks, long timestampNanos) {
+        if (config == null) {
+            return landmarks;
+        }
+        if (landmarks == null) {
+            initialized = false;
+            return null;
+        }
+
+        float[] raw = landmarks.getValues();
+        float[] filtered = new float[NUM_VALUES];
+        long elapsedNanos = timestampNanos - lastTimestampNanos;
+        if (!initialized || elapsedNanos > MAX_FRAME_GAP_NANOS) {
+            System.arraycopy(raw, 0, values, 0, NUM_VALUES);
+            Arrays.fill(derivatives, 0);
+            initialized = true;
+            lastTimestampNanos = timestampNanos;
+            System.arraycopy(raw, 0, filtered, 0, NUM_VALUES);
+            return new PoseLandmarks(filtered);
+        }
+        // Frames may complete out of order when several are in flight.
+        float seconds = elapsedNanos > 0 ? elapsedNanos / 1e9f : DEFAULT_FRAME_SECONDS;
+        lastTimestampNanos = Math.max(lastTimestampNanos, timestampNanos);
+
+        float derivativeAlpha = smoothingFactor(seconds, config.derivativeCutoff);
+        for (int offset = 0; offset < NUM_VALUES; offset += PoseLandmarks.STRIDE) {
+            float likelihood = raw[offset + 3];
+            float weight = Math.max(MIN_UPDATE_WEIGHT, Math.min(1, likelihood));
+            for (int i = offset; i < offset + 3; i++) {
+                float derivative = derivatives[i] + derivativeAlpha * ((raw[i] - values[i]) / seconds - derivatives[i]);
+                derivatives[i] = derivative;
+                float cutoff = config.minCutoff + config.beta * Math.abs(derivative);
+                float alpha = weight * smoothingFactor(seconds, cutoff);
+                values[i] += alpha * (raw[i] - values[i]);
+                filtered[i] = values[i];
+            }
+            filtered[offset + 3] = likelihood;
+        }
+        return new PoseLandmarks(filtered);
+    }
+
+    public synchronized void reset() {
+        initialized = false;
+    }
+
+    // Exponential smoothing factor of a low pass filter with the given cutoff frequency.
+    private static float smoothingFactor(float seconds, float cutoff) {
+        float tau = 1 / (2 * (float) Math.PI * cutoff);
+        return 1 / (1 + tau / seconds);
+    }
+}
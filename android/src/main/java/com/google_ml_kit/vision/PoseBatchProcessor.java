@@ -0,0 +1,173 @@
+package com.google_ml_kit.vision;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.pose.Pose;
+import com.google_ml_kit.vision.classification.PoseClassification;
+import com.google_ml_kit.vision.classification.PoseClassifierProcessor;
+import com.google_ml_kit.vision.classification.RepetitionEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import io.flutter.plugin.common.MethodChannel;
+
+// Runs pose detection over a list of images, e.g. the frames of a recorded video, in one call.
+// Images go through three overlapping stages: decoding on a dedicated thread, detection in ml kit
+// and classification on the classification executor. Classification runs strictly in image order
+// so smoothing and rep counting see the frames as a stream.
+public class PoseBatchProcessor {
+    private static final String TAG = "PoseBatchProcessor";
+    private static final String PROGRESS = "vision#poseBatchProgress";
+    // Bounds the number of decoded images held in memory at once.
+    private static final int MAX_IMAGES_IN_FLIGHT = 4;
+
+    public static final String CLASSIFIER_NONE = "none";
+    public static final String CLASSIFIER_POSE = "classifier";
+    public static final String CLASSIFIER_ACTIVITY = "activity";
+
+    private final Context context;
+    // Dedicated to batch progress, so dart can listen without taking over the plugin's channel.
+    private final MethodChannel progressChannel;
+    private final Executor classificationExecutor;
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public PoseBatchProcessor(Context context, MethodChannel progressChannel, Executor classificationExecutor) {
+        this.context = context;
+        this.progressChannel = progressChannel;
+        this.classificationExecutor = classificationExecutor;
+    }
+
+    // Answers result with a list holding the poses of each image in order, or null for images that
+    // failed. When batchId is not null, progress is reported to dart after each image.
+    public void process(List<Map<String, Object>> images,
+                        String model,
+                        String mode,
+                        boolean packed,
+                        Map<String, RepetitionEngine.Thresholds> repThresholds,
+                        String classifier,
+                        Integer batchId,
+                        MethodChannel.Result result) {
+        if (images.isEmpty()) {
+            result.success(new ArrayList<>());
+            return;
+        }
+        decodeExecutor.execute(() -> new Batch(images, model, mode, packed, repThresholds, classifier, batchId, result).run());
+    }
+
+    private class Batch {
+        private final List<Map<String, Object>> images;
+        private final String model;
+        private final String mode;
+        private final boolean packed;
+        private final Map<String, RepetitionEngine.Thresholds> repThresholds;
+        private final String classifier;
+        private final Integer batchId;
+        private final MethodChannel.Result result;
+        // Results are only touched on the main thread.
+        private final Object[] results;
+        private final Semaphore permits = new Semaphore(MAX_IMAGES_IN_FLIGHT);
+        // The batch gets its own client so it doesn't reconfigure or close the live one.
+        private final PoseDetectorManager poseDetectorManager = new PoseDetectorManager();
+        private int processed;
+
+        Batch(List<Map<String, Object>> images, String model, String mode, boolean packed,
+              Map<String, RepetitionEngine.Thresholds> repThresholds,
+              String classifier, Integer batchId, MethodChannel.Result result) {
+            this.images = images;
+            this.model = model;
+            this.mode = mode;
+            this.packed = packed;
+            this.repThresholds = repThresholds;
+            this.classifier = classifier;
+            this.batchId = batchId;
+            this.result = result;
+            this.results = new Object[images.size()];
+        }
+
+        // Runs on the decode thread.
+        void run() {
+            com.google.mlkit.vision.pose.PoseDetector poseDetector = poseDetectorManager.getClient(model, mode);
+            boolean isActivity = CLASSIFIER_ACTIVITY.equals(classifier);
+            PoseClassifierProcessor poseClassifierProcessor =
+                    CLASSIFIER_POSE.equals(classifier) || isActivity
+                            ? new PoseClassifierProcessor(context, isActivity, repThresholds)
+                            : null;
+
+            Task<?> previous = Tasks.forResult(null);
+            for (int i = 0; i < images.size(); i++) {
+                final int index = i;
+                permits.acquireUninterruptibly();
+
+                InputImage inputImage;
+                try {
+                    inputImage = InputImageConverter.getInputImage(images.get(i), context);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error decoding image " + i + "\n" + e);
+                    mainHandler.post(() -> onImageDone(index, null));
+                    continue;
+                }
+
+                final Task<Pose> detection = poseDetector.process(inputImage);
+                Task<List<Map<String, Object>>> encoded;
+                if (poseClassifierProcessor == null) {
+                    encoded = detection.continueWith(
+                            classificationExecutor,
+                            task -> PoseResultEncoder.encode(task.getResult(), null, packed));
+                } else {
+                    // Wait for the previous image to be classified, whatever its outcome, then
+                    // classify this one.
+                    encoded = previous
+                            .continueWithTask(classificationExecutor, task -> detection)
+                            .continueWith(classificationExecutor, task -> {
+                                Pose pose = task.getResult();
+                                PoseClassification classification = isActivity
+                                        ? poseClassifierProcessor.getPoseResultWithReps(pose)
+                                        : poseClassifierProcessor.getPoseResult(pose);
+                                return PoseResultEncoder.encode(pose, classification, packed);
+                            });
+                    previous = encoded;
+                }
+                encoded.addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Error processing image " + index + "\n" + task.getException());
+                    }
+                    onImageDone(index, task.isSuccessful() ? task.getResult() : null);
+                });
+            }
+        }
+
+        // Runs on the main thread.
+        private void onImageDone(int index, Object imageResult) {
+            results[index] = imageResult;
+            processed++;
+            permits.release();
+
+            if (batchId != null) {
+                Map<String, Object> progress = new HashMap<>();
+                progress.put("batchId", batchId);
+                progress.put("processed", processed);
+                progress.put("total", images.size());
+                progressChannel.invokeMethod(PROGRESS, progress);
+            }
+            if (processed == images.size()) {
+                poseDetectorManager.close();
+                result.success(new ArrayList<>(Arrays.asList(results)));
+            }
+        }
+    }
+}
@@ -6,23 +6,21 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.mlkit.vision.common.InputImage;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.PointF3D;
 import com.google.mlkit.vision.pose.Pose;
-import com.google.mlkit.vision.pose.PoseDetection;
-import com.google.mlkit.vision.pose.PoseLandmark;
-import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions;
-import com.google.mlkit.vision.pose.defaults.PoseDetectorOptions;
 import com.google_ml_kit.ApiDetectorInterface;
+import com.google_ml_kit.vision.classification.PoseClassification;
 import com.google_ml_kit.vision.classification.PoseClassifierProcessor;
-import com.google_ml_kit.vision.classification.RepetitionCounter;
+import com.google_ml_kit.vision.classification.RepetitionEngine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import io.flutter.plugin.common.MethodCall;
@@ -34,41 +32,29 @@ public class PoseDetector implements ApiDetectorInterface {
     private static final String START_WITHOUT_CLASSIFIER = "vision#startPoseDetectorWithoutCl";
     private static final String START_WITH_CLASSIFIER = "vision#startPoseDetectorWithCl";
     private static final String START_ACTIVITY = "vision#startPoseDetectorActivity";
+    private static final String PROCESS_BATCH = "vision#processPoseBatch";
+    private static final String GET_METRICS = "vision#getPoseMetrics";
     private static final String CLOSE = "vision#closePoseDetector";
 
     private final Context context;
-    private com.google.mlkit.vision.pose.PoseDetector poseDetector;
-    private PoseClassifierProcessor poseClassifierProcessor;
-    private final Executor classificationExecutor;
+    // Every dart PoseDetector streams into its own session, see PoseSession.
+    private final PoseSessionRegistry sessions = new PoseSessionRegistry();
+    private final PoseMetrics metrics = new PoseMetrics();
+    // Buffers of the frames prepared for detection, shared by all sessions.
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool();
+    private final FramePreprocessor framePreprocessor = new FramePreprocessor(frameBufferPool);
+    private final PoseBatchProcessor poseBatchProcessor;
 
-    public PoseDetector(Context context) {
+    public PoseDetector(Context context, MethodChannel poseBatchProgressChannel) {
         this.context = context;
-        classificationExecutor = Executors.newSingleThreadExecutor();
-    }
-
-    protected static class PoseWithClassification {
-        private final Pose pose;
-        private final List<String> classificationResult;
-
-        public PoseWithClassification(Pose pose, List<String> classificationResult) {
-            this.pose = pose;
-            this.classificationResult = classificationResult;
-        }
-
-
-        public Pose getPose() {
-            return pose;
-        }
-
-        public List<String> getClassificationResult() {
-            return classificationResult;
-        }
+        poseBatchProcessor = new PoseBatchProcessor(
+                context, poseBatchProgressChannel, Executors.newSingleThreadExecutor());
     }
 
     @Override
     public List<String> getMethodsKeys() {
         return new ArrayList<>(
-                Arrays.asList(START_WITHOUT_CLASSIFIER, START_WITH_CLASSIFIER, START_ACTIVITY, CLOSE)
+                Arrays.asList(START_WITHOUT_CLASSIFIER, START_WITH_CLASSIFIER, START_ACTIVITY, PROCESS_BATCH, GET_METRICS, CLOSE)
         );
     }
 
@@ -77,8 +63,23 @@ public class PoseDetector implements ApiDetectorInterface {
         String method = call.method;
         if (method.equals(START_WITHOUT_CLASSIFIER) || method.equals(START_WITH_CLASSIFIER) || method.equals(START_ACTIVITY)) {
             handleDetection(call, result);
+        } else if (method.equals(PROCESS_BATCH)) {
+            handleBatch(call, result);
+        } else if (method.equals(GET_METRICS)) {
+            Map<String, Object> metricsMap = metrics.toMap();
+            metricsMap.put("bufferPool", frameBufferPool.toMap());
+            result.success(metricsMap);
+            if (Boolean.TRUE.equals(call.argument("reset"))) {
+                metrics.reset();
+                frameBufferPool.resetCounters();
+            }
         } else if (method.equals(CLOSE)) {
-            closeDetector();
+            Integer sessionId = call.argument("sessionId");
+            if (sessionId == null) {
+                sessions.closeAll();
+            } else {
+                sessions.close(sessionId);
+            }
             result.success(null);
         } else {
             result.notImplemented();
@@ -87,151 +88,269 @@ public class PoseDetector implements ApiDetectorInterface {
 
     private void handleDetection(MethodCall call, final MethodChannel.Result result) {
         String methodName = call.method;
-        Map<String, Object> imageData = (Map<String, Object>) call.argument("imageData");
-        InputImage inputImage = InputImageConverter.getInputImageFromData(imageData, context, result);
-        if (inputImage == null) return;
+        metrics.recordReceived();
+        long receivedNanos = System.nanoTime();
+        PoseMetrics.FrameTimings timings = new PoseMetrics.FrameTimings();
 
         Map<String, Object> options = call.argument("options");
         if (options == null) {
+            metrics.recordFailure();
             result.error("PoseDetectorError", "Invalid options", null);
             return;
         }
 
         String model = (String) options.get("type");
         String mode = (String) options.get("mode");
-        int detectorMode = AccuratePoseDetectorOptions.STREAM_MODE;
+        boolean packed = Boolean.TRUE.equals(options.get("packedResults"));
+        boolean includeTimings = Boolean.TRUE.equals(options.get("includeTimings"));
+        Map<String, RepetitionEngine.Thresholds> repThresholds = parseRepThresholds(options.get("repThresholds"));
+        Integer sessionId = call.argument("sessionId");
+        PoseSession session = sessions.get(sessionId == null ? PoseSessionRegistry.DEFAULT_SESSION_ID : sessionId);
+        boolean single = "single".equals(mode);
+
+        // Single images are unrelated to each other, so there is nothing to filter over, reuse or
+        // track.
+        session.getLandmarkFilter().setConfig(
+                single ? null : LandmarkFilter.Config.fromOption(options.get("landmarkFilter")));
+        session.getRoiTracker().setConfig(
+                single ? null : RoiTracker.Config.fromOption(options.get("regionOfInterest")));
+        AdaptiveFrameSkipper frameSkipper = session.getFrameSkipper();
+        frameSkipper.setConfig(single ? null : AdaptiveFrameSkipper.Config.fromOption(options.get("frameSkipping")));
+
+        // A still pose is answered with the previous result, before spending anything on the image.
+        PoseWithClassification reused = frameSkipper.reuse(methodName);
+        if (reused != null) {
+            metrics.recordReused();
+            List<Map<String, Object>> poseList = PoseResultEncoder.encode(reused.getLandmarks(), reused.getClassification(), packed);
+            poseList.get(0).put("reused", true);
+            result.success(poseList);
+            return;
+        }
+
+        Map<String, Object> imageData = (Map<String, Object>) call.argument("imageData");
+        FramePreprocessor.Config downscale = FramePreprocessor.Config.fromOption(options.get("downscale"));
+
+        if (single) {
+            detectFrame(methodName, session, imageData, model, mode, downscale, packed, includeTimings,
+                    repThresholds, receivedNanos, timings, result);
+            return;
+        }
+
+        // Streamed frames go through the scheduler so that frames never queue up inside ml kit.
+        // A frame waiting for a slot holds on to its raw image data only. It is converted once it
+        // starts, so dropped frames cost nothing and the client is the session's client of that
+        // moment.
+        FrameScheduler frameScheduler = session.getFrameScheduler();
+        Object maxFramesInFlight = options.get("maxFramesInFlight");
+        if (maxFramesInFlight instanceof Integer) {
+            frameScheduler.setMaxInFlight((Integer) maxFramesInFlight);
+        }
+        frameScheduler.submit(new FrameScheduler.Frame() {
+            @Override
+            public void run(Runnable onDone) {
+                Task<?> detection = detectFrame(methodName, session, imageData, model, mode, downscale,
+                        packed, includeTimings, repThresholds, receivedNanos, timings, result);
+                if (detection == null) {
+                    onDone.run();
+                } else {
+                    detection.addOnCompleteListener(task -> onDone.run());
+                }
+            }
+
+            @Override
+            public void drop() {
+                metrics.recordDropped();
+                Map<String, Object> droppedMap = new HashMap<>();
+                droppedMap.put("dropped", true);
+                droppedMap.put("droppedFrames", frameScheduler.getDroppedFrames());
+                result.success(droppedMap);
+            }
+        });
+    }
 
-        // Base pose detector with streaming frames, when depending on the pose-detection sdk
-//        PoseDetectorOptions detectorOptions = new PoseDetectorOptions.Builder()
-//                .setDetectorMode(detectorMode)
-//                .build();
-//        poseDetector = PoseDetection.getClient(detectorOptions);
+    // Prepares the image of a frame, cropped to the session's current region of interest, and runs
+    // detection on the session's client for model and mode. Returns null after answering result
+    // when the image can't be read.
+    private Task<?> detectFrame(String methodName,
+                                PoseSession session,
+                                Map<String, Object> imageData,
+                                String model,
+                                String mode,
+                                FramePreprocessor.Config downscale,
+                                boolean packed,
+                                boolean includeTimings,
+                                Map<String, RepetitionEngine.Thresholds> repThresholds,
+                                long receivedNanos,
+                                PoseMetrics.FrameTimings timings,
+                                final MethodChannel.Result result) {
+        com.google.mlkit.vision.pose.PoseDetector poseDetector =
+                session.getPoseDetectorManager().getClient(model, mode);
 
-        // Accurate pose detector with streaming frames, when depending on the pose-detection-accurate sdk
-        AccuratePoseDetectorOptions detectorOptions = new AccuratePoseDetectorOptions.Builder()
-                .setDetectorMode(detectorMode)
-                .build();
-        poseDetector = PoseDetection.getClient(detectorOptions);
+        long conversionStart = System.nanoTime();
+        RoiTracker roiTracker = session.getRoiTracker();
+        RoiTracker.Crop crop = roiTracker.isEnabled() && InputImageConverter.isCameraFrame(imageData)
+                ? roiTracker.cropFor(
+                        InputImageConverter.getFrameWidth(imageData),
+                        InputImageConverter.getFrameHeight(imageData),
+                        InputImageConverter.getFrameRotation(imageData))
+                : null;
+        PreparedImage image = framePreprocessor.prepare(imageData, context, crop, downscale, result);
+        if (image == null) {
+            metrics.recordFailure();
+            return null;
+        }
+        timings.set(PoseMetrics.Stage.CONVERSION, System.nanoTime() - conversionStart);
+
+        return detect(methodName, session, poseDetector, image, packed, includeTimings, repThresholds,
+                receivedNanos, timings, result)
+                .addOnCompleteListener(task -> image.release());
+    }
+
+    private void handleBatch(MethodCall call, final MethodChannel.Result result) {
+        List<Map<String, Object>> images = call.argument("images");
+        Map<String, Object> options = call.argument("options");
+        if (images == null || options == null) {
+            result.error("PoseDetectorError", "Invalid batch arguments", null);
+            return;
+        }
+        String classifier = call.argument("classifier");
+        poseBatchProcessor.process(
+                images,
+                (String) options.get("type"),
+                (String) options.get("mode"),
+                Boolean.TRUE.equals(options.get("packedResults")),
+                parseRepThresholds(options.get("repThresholds")),
+                classifier == null ? PoseBatchProcessor.CLASSIFIER_NONE : classifier,
+                call.argument("batchId"),
+                result);
+    }
 
+    private Task<?> detect(String methodName,
+                           PoseSession session,
+                           com.google.mlkit.vision.pose.PoseDetector poseDetector,
+                           PreparedImage image,
+                           boolean packed,
+                           boolean includeTimings,
+                           Map<String, RepetitionEngine.Thresholds> repThresholds,
+                           long receivedNanos,
+                           PoseMetrics.FrameTimings timings,
+                           final MethodChannel.Result result) {
+        final long inferenceStart = System.nanoTime();
         if (methodName.equals(START_WITHOUT_CLASSIFIER)) {
-            poseDetector.process(inputImage)
+            return poseDetector.process(image.getImage())
                     .addOnSuccessListener(
                             (OnSuccessListener<Pose>) pose -> {
-                                List<Map<String, Object>> poseList = new ArrayList<>();
-
-                                if (!pose.getAllPoseLandmarks().isEmpty()) {
-                                    Map<String, Object> poseMap = new HashMap<String, Object>();
-                                    List<Map<String, Object>> landmarks = new ArrayList<>();
-                                    for (PoseLandmark poseLandmark : pose.getAllPoseLandmarks()) {
-                                        Map<String, Object> landmarkMap = new HashMap<>();
-                                        landmarkMap.put("type", poseLandmark.getLandmarkType());
-                                        landmarkMap.put("x", poseLandmark.getPosition3D().getX());
-                                        landmarkMap.put("y", poseLandmark.getPosition3D().getY());
-                                        landmarkMap.put("z", poseLandmark.getPosition3D().getZ());
-                                        landmarkMap.put("likelihood", poseLandmark.getInFrameLikelihood());
-                                        landmarks.add(landmarkMap);
-                                    }
-                                    poseMap.put("landmarks", landmarks);
-                                    poseMap.put("name", PoseDataStorage.getPose());
-                                    poseMap.put("accuracy", PoseDataStorage.getAccuracy());
-                                    poseList.add(poseMap);
-                                }
-                                result.success(poseList);
+                                timings.set(PoseMetrics.Stage.INFERENCE, System.nanoTime() - inferenceStart);
+                                PoseLandmarks landmarks = toFrameLandmarks(session, pose, image, receivedNanos, timings);
+                                session.getFrameSkipper().update(methodName, new PoseWithClassification(landmarks, null));
+                                sendResult(landmarks, null, packed, includeTimings, timings, result);
                             })
-                    .addOnFailureListener(e -> result.error("PoseDetectorError", e.toString(), null));
-        } else if (methodName.equals(START_WITH_CLASSIFIER)) {
-            poseDetector.process(inputImage)
-                    .continueWith(
-                            classificationExecutor,
-                            task -> {
-                                Pose pose = task.getResult();
-                                List<String> classificationResult = new ArrayList<>();
-
-                                if (poseClassifierProcessor == null) {
-                                    poseClassifierProcessor = new PoseClassifierProcessor(context, false);
-                                }
-
-                                classificationResult = poseClassifierProcessor.getPoseResult(pose);
-                                return new PoseWithClassification(pose, classificationResult);
-                            }
-                    )
-                    .addOnSuccessListener(
-                            (OnSuccessListener<PoseWithClassification>) poseWithClassification -> {
-                                List<Map<String, Object>> poseList = new ArrayList<>();
-                                final Pose pose = poseWithClassification.pose;
-
-                                if (!pose.getAllPoseLandmarks().isEmpty()) {
-                                    Map<String, Object> poseMap = new HashMap<String, Object>();
-                                    List<Map<String, Object>> landmarks = new ArrayList<>();
-                                    for (PoseLandmark poseLandmark : pose.getAllPoseLandmarks()) {
-                                        Map<String, Object> landmarkMap = new HashMap<>();
-                                        landmarkMap.put("type", poseLandmark.getLandmarkType());
-                                        landmarkMap.put("x", poseLandmark.getPosition3D().getX());
-                                        landmarkMap.put("y", poseLandmark.getPosition3D().getY());
-                                        landmarkMap.put("z", poseLandmark.getPosition3D().getZ());
-                                        landmarkMap.put("likelihood", poseLandmark.getInFrameLikelihood());
-                                        landmarks.add(landmarkMap);
-                                    }
-                                    poseMap.put("landmarks", landmarks);
-                                    poseMap.put("name", PoseDataStorage.getPose());
-                                    poseMap.put("accuracy", PoseDataStorage.getAccuracy());
-                                    poseList.add(poseMap);
-                                }
-                                result.success(poseList);
-                            }
-                    )
-                    .addOnFailureListener(e -> result.error("PoseDetectorClassifierError", e.toString(), null));
-        } else if(methodName.equals(START_ACTIVITY)) {
-            poseDetector.process(inputImage)
-                    .continueWith(
-                            classificationExecutor,
-                            task -> {
-                                Pose pose = task.getResult();
-                                List<String> classificationResult = new ArrayList<>();
-
-                                if (poseClassifierProcessor == null) {
-                                    poseClassifierProcessor = new PoseClassifierProcessor(context, true);
-                                }
-
-                                classificationResult = poseClassifierProcessor.getPoseResultWithReps(pose);
-                                return new PoseWithClassification(pose, classificationResult);
+                    .addOnFailureListener(e -> {
+                        metrics.recordFailure();
+                        result.error("PoseDetectorError", e.toString(), null);
+                    });
+        }
+
+        boolean isActivity = !methodName.equals(START_WITH_CLASSIFIER);
+        return poseDetector.process(image.getImage())
+                .continueWith(
+                        session.getClassificationExecutor(),
+                        task -> {
+                            Pose pose = task.getResult();
+                            timings.set(PoseMetrics.Stage.INFERENCE, System.nanoTime() - inferenceStart);
+                            PoseLandmarks landmarks = toFrameLandmarks(session, pose, image, receivedNanos, timings);
+                            List<PointF3D> positions =
+                                    landmarks == null ? new ArrayList<>() : landmarks.toPositions();
+                            PoseClassification classification;
+
+                            // Switching between classifying and counting activities, or changing rep
+                            // thresholds, starts the session's classification afresh.
+                            PoseClassifierProcessor poseClassifierProcessor =
+                                    session.getPoseClassifierProcessor(isActivity, repThresholds);
+                            if (poseClassifierProcessor == null) {
+                                poseClassifierProcessor = new PoseClassifierProcessor(context, isActivity, repThresholds);
+                                session.setPoseClassifierProcessor(poseClassifierProcessor, isActivity, repThresholds);
                             }
-                    )
-                    .addOnSuccessListener(
-                            (OnSuccessListener<PoseWithClassification>) poseWithClassification -> {
-                                List<Map<String, Object>> poseList = new ArrayList<>();
-                                final Pose pose = poseWithClassification.pose;
-
-                                if (!pose.getAllPoseLandmarks().isEmpty()) {
-                                    Map<String, Object> poseMap = new HashMap<String, Object>();
-                                    List<Map<String, Object>> landmarks = new ArrayList<>();
-                                    for (PoseLandmark poseLandmark : pose.getAllPoseLandmarks()) {
-                                        Map<String, Object> landmarkMap = new HashMap<>();
-                                        landmarkMap.put("type", poseLandmark.getLandmarkType());
-                                        landmarkMap.put("x", poseLandmark.getPosition3D().getX());
-                                        landmarkMap.put("y", poseLandmark.getPosition3D().getY());
-                                        landmarkMap.put("z", poseLandmark.getPosition3D().getZ());
-                                        landmarkMap.put("likelihood", poseLandmark.getInFrameLikelihood());
-                                        landmarks.add(landmarkMap);
-                                    }
-                                    poseMap.put("landmarks", landmarks);
-                                    poseMap.put("name", PoseDataStorage.getPose());
-                                    poseMap.put("accuracy", PoseDataStorage.getAccuracy());
-                                    poseMap.put("reps", RepetitionCounter.numRepeats);
-                                    poseList.add(poseMap);
-                                }
-                                result.success(poseList);
+
+                            if (isActivity) {
+                                classification = poseClassifierProcessor.getPoseResultWithReps(positions);
+                                timings.set(PoseMetrics.Stage.REP_COUNTING, poseClassifierProcessor.getLastRepCountingNanos());
+                            } else {
+                                classification = poseClassifierProcessor.getPoseResult(positions);
                             }
-                    )
-                    .addOnFailureListener(e -> result.error("PoseDetectorClassifierError", e.toString(), null));
+                            timings.set(PoseMetrics.Stage.CLASSIFICATION, poseClassifierProcessor.getLastClassificationNanos());
+                            timings.set(PoseMetrics.Stage.SMOOTHING, poseClassifierProcessor.getLastSmoothingNanos());
+                            return new PoseWithClassification(landmarks, classification);
+                        }
+                )
+                .addOnSuccessListener(
+                        (OnSuccessListener<PoseWithClassification>) poseWithClassification -> {
+                            session.getFrameSkipper().update(methodName, poseWithClassification);
+                            sendResult(
+                                    poseWithClassification.getLandmarks(),
+                                    poseWithClassification.getClassification(),
+                                    packed,
+                                    includeTimings,
+                                    timings,
+                                    result);
+                        }
+                )
+                .addOnFailureListener(e -> {
+                    metrics.recordFailure();
+                    result.error("PoseDetectorClassifierError", e.toString(), null);
+                });
+    }
+
+    // Maps the landmarks detected in a prepared image back to the full camera frame, tracks them
+    // for the crop of the next frame and runs them through the session's filter, if enabled.
+    // Returns null when no pose was found.
+    private static PoseLandmarks toFrameLandmarks(PoseSession session,
+                                                  Pose pose,
+                                                  PreparedImage image,
+                                                  long receivedNanos,
+                                                  PoseMetrics.FrameTimings timings) {
+        PoseLandmarks landmarks = image.toFrame(PoseLandmarks.fromPose(pose));
+        session.getRoiTracker().update(landmarks);
+        LandmarkFilter landmarkFilter = session.getLandmarkFilter();
+        if (!landmarkFilter.isEnabled()) {
+            return landmarks;
         }
+        long filteringStart = System.nanoTime();
+        landmarks = landmarkFilter.filter(landmarks, receivedNanos);
+        timings.set(PoseMetrics.Stage.FILTERING, System.nanoTime() - filteringStart);
+        return landmarks;
+    }
+
+    private void sendResult(PoseLandmarks landmarks,
+                            PoseClassification classification,
+                            boolean packed,
+                            boolean includeTimings,
+                            PoseMetrics.FrameTimings timings,
+                            MethodChannel.Result result) {
+        long marshallingStart = System.nanoTime();
+        List<Map<String, Object>> poseList = PoseResultEncoder.encode(landmarks, classification, packed);
+        timings.set(PoseMetrics.Stage.MARSHALLING, System.nanoTime() - marshallingStart);
+        metrics.recordProcessed(timings);
 
+        if (includeTimings && !poseList.isEmpty()) {
+            poseList.get(0).put("timings", timings.toMap());
+        }
+        result.success(poseList);
     }
 
-    private void closeDetector() {
-        poseDetector.close();
-        poseClassifierProcessor = null;
-        PoseDataStorage.setData(null, 0.0);
-        RepetitionCounter.numRepeats = 0;
+    // Reads the rep counting thresholds option, a map from class name to a map holding the
+    // "enter" and "exit" confidences. Returns null when absent.
+    static Map<String, RepetitionEngine.Thresholds> parseRepThresholds(Object option) {
+        if (!(option instanceof Map)) {
+            return null;
+        }
+        Map<String, RepetitionEngine.Thresholds> repThresholds = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) option).entrySet()) {
+            Map<?, ?> thresholds = (Map<?, ?>) entry.getValue();
+            repThresholds.put((String) entry.getKey(), new RepetitionEngine.Thresholds(
+                    ((Number) thresholds.get("enter")).floatValue(),
+                    ((Number) thresholds.get("exit")).floatValue()));
+        }
+        return repThresholds;
     }
 }
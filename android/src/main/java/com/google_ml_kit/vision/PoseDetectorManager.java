@@ -0,0 +1,78 @@
+package com.google_ml_kit.vision;
+
+import com.google.mlkit.vision.pose.PoseDetection;
+import com.google.mlkit.vision.pose.PoseDetectorOptionsBase;
+import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions;
+import com.google.mlkit.vision.pose.defaults.PoseDetectorOptions;
+
+// Owns the lifecycle of the ml kit pose detector client.
+// A client is created lazily for the requested model/mode, reused for every frame with the same
+// configuration and closed when the configuration changes or the detector is closed.
+public class PoseDetectorManager {
+
+    // Creates a new ml kit client for the given model ("base"/"accurate") and mode ("single"/"stream").
+    public interface ClientFactory {
+        com.google.mlkit.vision.pose.PoseDetector create(String model, String mode);
+    }
+
+    private final ClientFactory clientFactory;
+    private com.google.mlkit.vision.pose.PoseDetector client;
+    private String clientKey;
+
+    public PoseDetectorManager() {
+        this(new DefaultClientFactory());
+    }
+
+    public PoseDetectorManager(ClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    // Returns the client for the given configuration, creating it only if none exists yet or the
+    // configuration differs from the one the current client was built with.
+    public synchronized com.google.mlkit.vision.pose.PoseDetector getClient(String model, String mode) {
+        String key = model + "/" + mode;
+        if (client != null && key.equals(clientKey)) {
+            return client;
+        }
+        close();
+        client = clientFactory.create(model, mode);
+        clientKey = key;
+        return client;
+    }
+
+    public synchronized boolean isOpen() {
+        return client != null;
+    }
+
+    public synchronized void close() {
+        if (client != null) {
+            client.close();
+            client = null;
+            clientKey = null;
+        }
+    }
+
+    private static class DefaultClientFactory implements ClientFactory {
+        @Override
+        public com.google.mlkit.vision.pose.PoseDetector create(String model, String mode) {
+            int detectorMode = "single".equals(mode)
+                    ? PoseDetectorOptionsBase.SINGLE_IMAGE_MODE
+                    : PoseDetectorOptionsBase.STREAM_MODE;
+
+            if ("accurate".equals(model)) {
+                // Accurate pose detector, backed by the pose-detection-accurate sdk
+                AccuratePoseDetectorOptions detectorOptions = new AccuratePoseDetectorOptions.Builder()
+                        .setDetectorMode(detectorMode)
+                        .build();
+                return PoseDetection.getClient(detectorOptions);
+            }
+
+            // Base pose detector, backed by the pose-detection sdk. Cheaper per frame than the
+            // accurate model, which makes it the better fit for live camera streams.
+            PoseDetectorOptions detectorOptions = new PoseDetectorOptions.Builder()
+                    .setDetectorMode(detectorMode)
+                    .build();
+            return PoseDetection.getClient(detectorOptions);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.google_ml_kit.vision;
+
+import com.google.mlkit.vision.common.PointF3D;
+import com.google.mlkit.vision.pose.Pose;
+import com.google.mlkit.vision.pose.PoseLandmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Landmarks of a detected pose in plain floats, so they can be filtered and transformed between
+// detection and classification without going through ml kit's immutable objects.
+// The layout is the packed layout of PoseResultEncoder: PACKED_LANDMARK_STRIDE floats
+// (x, y, z, likelihood) per landmark, the landmark of type t starting at float t * stride.
+public class PoseLandmarks {
+    public static final int NUM_LANDMARKS = PoseResultEncoder.NUM_LANDMARKS;
+    public static final int STRIDE = PoseResultEncoder.PACKED_LANDMARK_STRIDE;
+
+    private final float[] values;
+
+    public PoseLandmarks(float[] values) {
+        if (values.length != NUM_LANDMARKS * STRIDE) {
+            throw new IllegalArgumentException("Expected " + NUM_LANDMARKS * STRIDE + " values, got " + values.length);
+        }
+        this.values = values;
+    }
+
+    // Returns null when no pose was detected.
+    public static PoseLandmarks fromPose(Pose pose) {
+        List<PoseLandmark> poseLandmarks = pose.getAllPoseLandmarks();
+        if (poseLandmarks.isEmpty()) {
+            return null;
+        }
+        float[] values = new float[NUM_LANDMARKS * STRIDE];
+        for (PoseLandmark poseLandmark : poseLandmarks) {
+            int type = poseLandmark.getLandmarkType();
+            if (type < 0 || type >= NUM_LANDMARKS) continue;
+            PointF3D position = poseLandmark.getPosition3D();
+            values[type * STRIDE] = position.getX();
+            values[type * STRIDE + 1] = position.getY();
+            values[type * STRIDE + 2] = position.getZ();
+            values[type * STRIDE + 3] = poseLandmark.getInFrameLikelihood();
+        }
+        return new PoseLandmarks(values);
+    }
+
+    // The backing array, not a copy.
+    public float[] getValues() {
+        return values;
+    }
+
+    public float getX(int type) {
+        return values[type * STRIDE];
+    }
+
+    public float getY(int type) {
+        return values[type * STRIDE + 1];
+    }
+
+    public float getZ(int type) {
+        return values[type * STRIDE + 2];
+    }
+
+    public float getLikelihood(int type) {
+        return values[type * STRIDE + 3];
+    }
+
+    // Positions in landmark type order, as taken by the classifier.
+    public List<PointF3D> toPositions() {
+        List<PointF3D> positions = new ArrayList<>(NUM_LANDMARKS);
+        for (int type = 0; type < NUM_LANDMARKS; type++) {
+            positions.add(PointF3D.from(getX(type), getY(type), getZ(type)));
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,138 @@
+package com.google_ml_kit.vision;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Latency and throughput metrics of the pose pipeline.
+// Each stage keeps the durations of its most recent frames in a fixed size window, from which
+// percentiles are computed on demand. Durations are measured with System.nanoTime, which is
+// monotonic.
+public class PoseMetrics {
+    private static final int WINDOW_SIZE = 512;
+
+    public enum Stage {
+        CONVERSION("conversion"),
+        INFERENCE("inference"),
+        FILTERING("filtering"),
+        CLASSIFICATION("classification"),
+        SMOOTHING("smoothing"),
+        REP_COUNTING("repCounting"),
+        MARSHALLING("marshalling");
+
+        private final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+    }
+
+    // Stage durations of a single frame. Stages the frame didn't go through are left out.
+    public static class FrameTimings {
+        private final long[] nanos = new long[Stage.values().length];
+
+        public FrameTimings() {
+            Arrays.fill(nanos, -1);
+        }
+
+        public void set(Stage stage, long durationNanos) {
+            nanos[stage.ordinal()] = durationNanos;
+        }
+
+        public long get(Stage stage) {
+            return nanos[stage.ordinal()];
+        }
+
+        // Durations in milliseconds keyed by stage.
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            for (Stage stage : Stage.values()) {
+                if (nanos[stage.ordinal()] >= 0) {
+                    map.put(stage.key, nanos[stage.ordinal()] / 1e6);
+                }
+            }
+            return map;
+        }
+    }
+
+    private final long[][] windows = new long[Stage.values().length][WINDOW_SIZE];
+    private final long[] windowTotals = new long[Stage.values().length];
+    private long framesReceived;
+    private long framesProcessed;
+    private long framesDropped;
+    private long framesReused;
+    private long failures;
+    private long startNanos = System.nanoTime();
+
+    public synchronized void recordReceived() {
+        framesReceived++;
+    }
+
+    public synchronized void recordDropped() {
+        framesDropped++;
+    }
+
+    // A frame answered with the result of an earlier one, see AdaptiveFrameSkipper.
+    public synchronized void recordReused() {
+        framesReused++;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+    }
+
+    public synchronized void recordProcessed(FrameTimings timings) {
+        framesProcessed++;
+        for (Stage stage : Stage.values()) {
+            long duration = timings.get(stage);
+            if (duration < 0) continue;
+            int i = stage.ordinal();
+            windows[i][(int) (windowTotals[i] % WINDOW_SIZE)] = duration;
+            windowTotals[i]++;
+        }
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(windowTotals, 0);
+        framesReceived = 0;
+        framesProcessed = 0;
+        framesDropped = 0;
+        framesReused = 0;
+        failures = 0;
+        startNanos = System.nanoTime();
+    }
+
+    // Counters, throughput in processed frames per second, and p50/p95/p99 per stage in milliseconds.
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("framesReceived", framesReceived);
+        map.put("framesProcessed", framesProcessed);
+        map.put("framesDropped", framesDropped);
+        map.put("framesReused", framesReused);
+        map.put("failures", failures);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        map.put("framesPerSecond", elapsedSeconds > 0 ? framesProcessed / elapsedSeconds : 0.0);
+
+        Map<String, Object> stages = new HashMap<>();
+        for (Stage stage : Stage.values()) {
+            int count = (int) Math.min(windowTotals[stage.ordinal()], WINDOW_SIZE);
+            if (count == 0) continue;
+            long[] sorted = Arrays.copyOf(windows[stage.ordinal()], count);
+            Arrays.sort(sorted);
+            Map<String, Object> stageMap = new HashMap<>();
+            stageMap.put("count", windowTotals[stage.ordinal()]);
+            stageMap.put("p50", percentile(sorted, 0.50) / 1e6);
+            stageMap.put("p95", percentile(sorted, 0.95) / 1e6);
+            stageMap.put("p99", percentile(sorted, 0.99) / 1e6);
+            stages.put(stage.key, stageMap);
+        }
+        map.put("stages", stages);
+        return map;
+    }
+
+    // Nearest rank percentile of sorted values.
+    private static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+}
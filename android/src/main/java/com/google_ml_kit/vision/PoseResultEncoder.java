@@ -0,0 +1,116 @@
+package com.google_ml_kit.vision;
+
+import com.google.mlkit.vision.pose.Pose;
+import com.google_ml_kit.vision.classification.PoseClassification;
+import com.google_ml_kit.vision.classification.RepetitionEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Converts detected poses into the structures sent back over the method channel.
+//
+// Landmarks are either sent as one map per landmark, or, when packed, as a single byte array of
+// little-endian floats which is much cheaper to serialise. The packed layout has
+// PACKED_LANDMARK_STRIDE floats per landmark (x, y, z, likelihood), and the landmark of type t
+// starts at float t * PACKED_LANDMARK_STRIDE.
+public class PoseResultEncoder {
+    public static final int NUM_LANDMARKS = 33;
+    public static final int PACKED_LANDMARK_STRIDE = 4;
+
+    private PoseResultEncoder() {}
+
+    // Returns the list of poses for a single image. Empty if no pose was found.
+    // classification is null when the pose wasn't classified, rep counts are left out of the result
+    // unless it carries them.
+    public static List<Map<String, Object>> encode(Pose pose, PoseClassification classification) {
+        return encode(pose, classification, false);
+    }
+
+    public static List<Map<String, Object>> encode(Pose pose, PoseClassification classification, boolean packed) {
+        return encode(PoseLandmarks.fromPose(pose), classification, packed);
+    }
+
+    // Same for landmarks that went through the pipeline, null when no pose was found.
+    public static List<Map<String, Object>> encode(PoseLandmarks poseLandmarks,
+                                                   PoseClassification classification,
+                                                   boolean packed) {
+        List<Map<String, Object>> poseList = new ArrayList<>();
+
+        if (poseLandmarks != null) {
+            Map<String, Object> poseMap = new HashMap<String, Object>();
+            if (packed) {
+                poseMap.put("packedLandmarks", packLandmarks(poseLandmarks));
+            } else {
+                List<Map<String, Object>> landmarks = new ArrayList<>();
+                for (int type = 0; type < NUM_LANDMARKS; type++) {
+                    Map<String, Object> landmarkMap = new HashMap<>();
+                    landmarkMap.put("type", type);
+                    landmarkMap.put("x", poseLandmarks.getX(type));
+                    landmarkMap.put("y", poseLandmarks.getY(type));
+                    landmarkMap.put("z", poseLandmarks.getZ(type));
+                    landmarkMap.put("likelihood", poseLandmarks.getLikelihood(type));
+                    landmarks.add(landmarkMap);
+                }
+                poseMap.put("landmarks", landmarks);
+            }
+            if (classification != null) {
+                encodeClassification(classification, poseMap);
+            } else {
+                poseMap.put("name", null);
+                poseMap.put("accuracy", 0.0);
+            }
+            poseList.add(poseMap);
+        }
+        return poseList;
+    }
+
+    // "name" and "accuracy" hold the most likely class, with the accuracy rounded to two decimals,
+    // "topClasses" the most likely classes in order.
+    private static void encodeClassification(PoseClassification classification, Map<String, Object> poseMap) {
+        poseMap.put("name", classification.getClassName());
+        poseMap.put("accuracy", roundAccuracy(classification.getAccuracy()));
+        List<Map<String, Object>> topClasses = new ArrayList<>();
+        for (PoseClassification.ClassAccuracy classAccuracy : classification.getTopClasses()) {
+            Map<String, Object> classMap = new HashMap<>();
+            classMap.put("name", classAccuracy.getClassName());
+            classMap.put("accuracy", roundAccuracy(classAccuracy.getAccuracy()));
+            topClasses.add(classMap);
+        }
+        poseMap.put("topClasses", topClasses);
+        if (classification.getRepetitions() != null) {
+            encodeRepetitions(classification.getRepetitions(), poseMap);
+        }
+    }
+
+    private static double roundAccuracy(float accuracy) {
+        return Math.round(accuracy * 100) / 100.0;
+    }
+
+    // "reps" holds the reps of the exercise currently performed, over all its sets, rather than the
+    // one total of every exercise it used to hold. "repsByClass" holds the reps of every exercise
+    // and "sets" the performed sets in order.
+    private static void encodeRepetitions(RepetitionEngine.Snapshot repetitions, Map<String, Object> poseMap) {
+        poseMap.put("reps", repetitions.getActiveReps());
+        poseMap.put("repsByClass", new HashMap<>(repetitions.getRepsByClass()));
+        List<Map<String, Object>> sets = new ArrayList<>();
+        for (RepetitionEngine.RepSet set : repetitions.getSets()) {
+            Map<String, Object> setMap = new HashMap<>();
+            setMap.put("name", set.getClassName());
+            setMap.put("reps", set.getReps());
+            sets.add(setMap);
+        }
+        poseMap.put("sets", sets);
+    }
+
+    public static byte[] packLandmarks(PoseLandmarks poseLandmarks) {
+        ByteBuffer buffer = ByteBuffer
+                .allocate(NUM_LANDMARKS * PACKED_LANDMARK_STRIDE * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(poseLandmarks.getValues());
+        return buffer.array();
+    }
+}
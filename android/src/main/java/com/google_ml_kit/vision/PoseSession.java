@@ -0,0 +1,91 @@
+package com.google_ml_kit.vision;
+
+import com.google_ml_kit.vision.classification.PoseClassifierProcessor;
+import com.google_ml_kit.vision.classification.RepetitionEngine;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+// State of one pose detection session: its ml kit client, frame scheduling, skipping and cropping,
+// landmark filtering and classification state (smoothing and rep counts). Each dart PoseDetector has its own session, so several
+// detectors can run at the same time without affecting each other. Pose samples are immutable and
+// shared between sessions through PoseClassifierCache.
+public class PoseSession {
+    private final int id;
+    private final PoseDetectorManager poseDetectorManager = new PoseDetectorManager();
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+    private final LandmarkFilter landmarkFilter = new LandmarkFilter();
+    private final AdaptiveFrameSkipper frameSkipper = new AdaptiveFrameSkipper();
+    private final RoiTracker roiTracker = new RoiTracker();
+    // Classification of a session runs in frame order, concurrently with other sessions.
+    private final Executor classificationExecutor;
+    // Only touched on the classification executor, along with the configuration it was created for.
+    private PoseClassifierProcessor poseClassifierProcessor;
+    private boolean classifierIsActivity;
+    private Map<String, RepetitionEngine.Thresholds> classifierRepThresholds;
+
+    public PoseSession(int id, Executor sharedExecutor) {
+        this.id = id;
+        this.classificationExecutor = new SerialExecutor(sharedExecutor);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public PoseDetectorManager getPoseDetectorManager() {
+        return poseDetectorManager;
+    }
+
+    public FrameScheduler getFrameScheduler() {
+        return frameScheduler;
+    }
+
+    public LandmarkFilter getLandmarkFilter() {
+        return landmarkFilter;
+    }
+
+    public AdaptiveFrameSkipper getFrameSkipper() {
+        return frameSkipper;
+    }
+
+    public RoiTracker getRoiTracker() {
+        return roiTracker;
+    }
+
+    public Executor getClassificationExecutor() {
+        return classificationExecutor;
+    }
+
+    // Returns the classifier processor created for this configuration, or null when there is none
+    // yet or it was created for another one. Rep thresholds only matter for activities.
+    public PoseClassifierProcessor getPoseClassifierProcessor(
+            boolean isActivity, Map<String, RepetitionEngine.Thresholds> repThresholds) {
+        if (poseClassifierProcessor == null || isActivity != classifierIsActivity) {
+            return null;
+        }
+        if (isActivity && !Objects.equals(repThresholds, classifierRepThresholds)) {
+            return null;
+        }
+        return poseClassifierProcessor;
+    }
+
+    // Replaces the classifier processor, and with it the smoothing and rep counts of the session.
+    public void setPoseClassifierProcessor(PoseClassifierProcessor poseClassifierProcessor,
+                                           boolean isActivity,
+                                           Map<String, RepetitionEngine.Thresholds> repThresholds) {
+        this.poseClassifierProcessor = poseClassifierProcessor;
+        this.classifierIsActivity = isActivity;
+        this.classifierRepThresholds = repThresholds;
+    }
+
+    // Releases the client. Frames still in flight complete, their results are sent as usual.
+    void close() {
+        frameScheduler.reset();
+        landmarkFilter.reset();
+        frameSkipper.reset();
+        roiTracker.reset();
+        poseDetectorManager.close();
+    }
+}
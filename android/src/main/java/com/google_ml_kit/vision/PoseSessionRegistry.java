@@ -0,0 +1,49 @@
+package com.google_ml_kit.vision;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Pose detection sessions by the id dart assigned them. Sessions are created by their first frame
+// and live until they are closed. Only used from the platform thread.
+public class PoseSessionRegistry {
+    // Id of the session used by callers that don't pass one.
+    public static final int DEFAULT_SESSION_ID = 0;
+
+    private final Map<Integer, PoseSession> sessions = new HashMap<>();
+    // Runs the classification of all sessions, each session keeping its own order. Idle threads
+    // are released after a minute.
+    private final ExecutorService classificationThreads = Executors.newCachedThreadPool();
+
+    public PoseSession get(int id) {
+        PoseSession session = sessions.get(id);
+        if (session == null) {
+            session = new PoseSession(id, classificationThreads);
+            sessions.put(id, session);
+        }
+        return session;
+    }
+
+    // Closes the session if it exists, leaving all others untouched.
+    public void close(int id) {
+        PoseSession session = sessions.remove(id);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    public void closeAll() {
+        List<PoseSession> closing = new ArrayList<>(sessions.values());
+        sessions.clear();
+        for (PoseSession session : closing) {
+            session.close();
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.google_ml_kit.vision;
+
+import com.google_ml_kit.vision.classification.PoseClassification;
+
+// Result of detecting one frame: its landmarks, and their classification when classifying.
+public class PoseWithClassification {
+    private final PoseLandmarks landmarks;
+    private final PoseClassification classification;
+
+    public PoseWithClassification(PoseLandmarks landmarks, PoseClassification classification) {
+        this.landmarks = landmarks;
+        this.classification = classification;
+    }
+
+    // Null when no pose was found.
+    public PoseLandmarks getLandmarks() {
+        return landmarks;
+    }
+
+    // Null when detecting without a classifier.
+    public PoseClassification getClassification() {
+        return classification;
+    }
+}
@@ -0,0 +1,61 @@
+package com.google_ml_kit.vision;
+
+import com.google.mlkit.vision.common.InputImage;
+
+import java.nio.ByteBuffer;
+
+// An image ready for detection, with the transform taking its landmarks back to the upright camera
+// frame and the pooled buffer backing it, if any.
+//
+// Landmarks of a prepared image are scaled by scale and then moved by offsetX, offsetY, which
+// covers cropping, downscaling and rotating the frame upright before detection.
+public class PreparedImage {
+    private final InputImage image;
+    private final float scale;
+    private final float offsetX;
+    private final float offsetY;
+    private final FrameBufferPool pool;
+    private ByteBuffer buffer;
+
+    public PreparedImage(InputImage image, float scale, float offsetX, float offsetY,
+                         FrameBufferPool pool, ByteBuffer buffer) {
+        this.image = image;
+        this.scale = scale;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    // An image detected as it is.
+    public static PreparedImage of(InputImage image) {
+        return new PreparedImage(image, 1, 0, 0, null, null);
+    }
+
+    public InputImage getImage() {
+        return image;
+    }
+
+    // Maps landmarks detected in this image to the upright camera frame. Null stays null.
+    public PoseLandmarks toFrame(PoseLandmarks landmarks) {
+        if (landmarks == null || (scale == 1 && offsetX == 0 && offsetY == 0)) {
+            return landmarks;
+        }
+        float[] values = landmarks.getValues().clone();
+        for (int i = 0; i < values.length; i += PoseLandmarks.STRIDE) {
+            values[i] = values[i] * scale + offsetX;
+            values[i + 1] = values[i + 1] * scale + offsetY;
+            values[i + 2] *= scale;
+        }
+        return new PoseLandmarks(values);
+    }
+
+    // Hands the pooled buffer back once detection and classification are done with the frame,
+    // whether they succeeded or not. Safe to call twice.
+    public synchronized void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.google_ml_kit.vision;
+
+import java.util.Map;
+
+// Picks the region of streamed camera frames to run detection on from the pose of earlier frames.
+//
+// The region is the bounding box of the last pose padded on every side. Cropping the frame to it
+// before detection saves ml kit from decoding and scanning the pixels around the person. The
+// region is kept while the pose stays well inside it, so consecutive frames usually have the same
+// size, and it falls back to the full frame when the pose is lost or fills most of the frame.
+//
+// Crops are in the coordinates of the frame buffer, which is rotated relative to the upright image
+// ml kit reports landmarks in. For every rotation an upright crop maps back to the upright frame by
+// a plain translation, its offset.
+public class RoiTracker {
+    // Landmarks less likely than this to be in the frame don't count towards the pose's box.
+    private static final float MIN_LIKELIHOOD = 0.5f;
+    // Fewer reliable landmarks than this count as losing the pose.
+    private static final int MIN_LANDMARKS = 8;
+    // Crops covering more than this share of the frame aren't worth the copy.
+    private static final float MAX_CROP_AREA = 0.8f;
+    private static final int MIN_CROP_SIZE = 96;
+
+    public static class Config {
+        public static final float DEFAULT_PADDING = 0.25f;
+
+        // Padding on each side of the pose's box, relative to the box's larger side.
+        final float padding;
+
+        public Config(float padding) {
+            this.padding = Math.max(0, padding);
+        }
+
+        // Reads the "regionOfInterest" option, a map of the parameters. Returns null when absent,
+        // which disables cropping. Missing parameters take their defaults.
+        static Config fromOption(Object option) {
+            if (!(option instanceof Map)) {
+                return null;
+            }
+            Object padding = ((Map<?, ?>) option).get("padding");
+            return new Config(padding instanceof Number ? ((Number) padding).floatValue() : DEFAULT_PADDING);
+        }
+    }
+
+    // A crop of a frame buffer. Left, top, width and height are even, as NV21 chroma samples
+    // cover 2x2 pixels.
+    public static class Crop {
+        public final int left;
+        public final int top;
+        public final int width;
+        public final int height;
+        // Translation from landmarks in the upright crop to the upright frame.
+        public final float offsetX;
+        public final float offsetY;
+        // Size of the upright crop.
+        final int uprightWidth;
+        final int uprightHeight;
+
+        Crop(int left, int top, int width, int height, int frameWidth, int frameHeight, int rotation) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            int right = left + width;
+            int bottom = top + height;
+            switch (rotation) {
+                case 90:
+                    offsetX = frameHeight - bottom;
+                    offsetY = left;
+                    break;
+                case 180:
+                    offsetX = frameWidth - right;
+                    offsetY = frameHeight - bottom;
+                    break;
+                case 270:
+                    offsetX = top;
+                    offsetY = frameWidth - right;
+                    break;
+                default:
+                    offsetX = left;
+                    offsetY = top;
+            }
+            boolean swapped = rotation == 90 || rotation == 270;
+            uprightWidth = swapped ? height : width;
+            uprightHeight = swapped ? width : height;
+        }
+    }
+
+    private Config config;
+    private int frameWidth;
+    private int frameHeight;
+    private int rotation;
+    // Box of the last pose in the upright frame as minX, minY, maxX, maxY, null when lost.
+    private float[] poseBox;
+    private Crop crop;
+
+    // Sets the parameters, null disables cropping.
+    public synchronized void setConfig(Config config) {
+        this.config = config;
+        if (config == null) {
+            reset();
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return config != null;
+    }
+
+    // Returns the crop to detect a frame of the given buffer size and rotation in, null for the
+    // full frame.
+    public synchronized Crop cropFor(int width, int height, int rotation) {
+        if (config == null) {
+            return null;
+        }
+        if (width != frameWidth || height != frameHeight || rotation != this.rotation) {
+            reset();
+            frameWidth = width;
+            frameHeight = height;
+            this.rotation = rotation;
+        }
+        if (poseBox == null) {
+            crop = null;
+        } else if (crop == null || !isWellInside(poseBox, crop)) {
+            crop = paddedCrop(poseBox);
+        }
+        return crop;
+    }
+
+    // Called with the landmarks of every detected frame, in upright frame coordinates. Null when
+    // no pose was found, after which the next frame is detected in full.
+    public synchronized void update(PoseLandmarks landmarks) {
+        if (config == null) {
+            return;
+        }
+        poseBox = landmarks == null ? null : boxOf(landmarks);
+        if (poseBox == null) {
+            crop = null;
+        }
+    }
+
+    public synchronized void reset() {
+        poseBox = null;
+        crop = null;
+    }
+
+    private int uprightFrameWidth() {
+        return rotation == 90 || rotation == 270 ? frameHeight : frameWidth;
+    }
+
+    private int uprightFrameHeight() {
+        return rotation == 90 || rotation == 270 ? frameWidth : frameHeight;
+    }
+
+    // Whether the box keeps half the padding from every crop edge that isn't a frame edge.
+    private boolean isWellInside(float[] box, Crop crop) {
+        float margin = config.padding / 2 * Math.max(box[2] - box[0], box[3] - box[1]);
+        float cropRight = crop.offsetX + crop.uprightWidth;
+        float cropBottom = crop.offsetY + crop.uprightHeight;
+        return (crop.offsetX <= 0 || box[0] - margin >= crop.offsetX)
+                && (crop.offsetY <= 0 || box[1] - margin >= crop.offsetY)
+                && (cropRight >= uprightFrameWidth() || box[2] + margin <= cropRight)
+                && (cropBottom >= uprightFrameHeight() || box[3] + margin <= cropBottom);
+    }
+
+    // Pads the box, converts it to buffer coordinates and aligns it to even pixels. Null when the
+    // crop would cover most of the frame anyway.
+    private Crop paddedCrop(float[] box) {
+        float pad = config.padding * Math.max(box[2] - box[0], box[3] - box[1]);
+        float minX = Math.max(0, box[0] - pad);
+        float minY = Math.max(0, box[1] - pad);
+        float maxX = Math.min(uprightFrameWidth(), box[2] + pad);
+        float maxY = Math.min(uprightFrameHeight(), box[3] + pad);
+
+        float left, top, right, bottom;
+        switch (rotation) {
+            case 90:
+                left = minY;
+                right = maxY;
+                top = frameHeight - maxX;
+                bottom = frameHeight - minX;
+                break;
+            case 180:
+                left = frameWidth - maxX;
+                right = frameWidth - minX;
+                top = frameHeight - maxY;
+                bottom = frameHeight - minY;
+                break;
+            case 270:
+                left = frameWidth - maxY;
+                right = frameWidth - minY;
+                top = minX;
+                bottom = maxX;
+                break;
+            default:
+                left = minX;
+                right = maxX;
+                top = minY;
+                bottom = maxY;
+        }
+
+        int cropLeft = evenFloor(left);
+        int cropTop = evenFloor(top);
+        int cropRight = Math.min(evenCeil(right), evenFloor(frameWidth));
+        int cropBottom = Math.min(evenCeil(bottom), evenFloor(frameHeight));
+        int cropWidth = cropRight - cropLeft;
+        int cropHeight = cropBottom - cropTop;
+        if (cropWidth < MIN_CROP_SIZE || cropHeight < MIN_CROP_SIZE
+                || (float) cropWidth * cropHeight > MAX_CROP_AREA * frameWidth * frameHeight) {
+            return null;
+        }
+        return new Crop(cropLeft, cropTop, cropWidth, cropHeight, frameWidth, frameHeight, rotation);
+    }
+
+    private static float[] boxOf(PoseLandmarks landmarks) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        int count = 0;
+        for (int type = 0; type < PoseLandmarks.NUM_LANDMARKS; type++) {
+            if (landmarks.getLikelihood(type) < MIN_LIKELIHOOD) continue;
+            minX = Math.min(minX, landmarks.getX(type));
+            maxX = Math.max(maxX, landmarks.getX(type));
+            minY = Math.min(minY, landmarks.getY(type));
+            maxY = Math.max(maxY, landmarks.getY(type));
+            count++;
+        }
+        return count < MIN_LANDMARKS ? null : new float[] {minX, minY, maxX, maxY};
+    }
+
+    private static int evenFloor(float value) {
+        return Math.max(0, (int) Math.floor(value)) & ~1;
+    }
+
+    private static int evenCeil(float value) {
+        int ceil = (int) Math.ceil(value);
+        return (ceil + 1) & ~1;
+    }
+}
@@ -0,0 +1,102 @@
+package com.google_ml_kit.vision;
+
+// Shrinks a region of a YUV 4:2:0 frame by an integer factor into an NV21 frame, optionally
+// rotating it upright on the way, in a single pass over the source.
+//
+// Each output sample is the mean of the factor x factor box of source samples it covers, on the
+// luma plane and on the chroma planes alike. Chroma samples cover 2x2 luma pixels, so a box of
+// chroma samples covers exactly the luma box of the output pixels sharing that chroma sample.
+// The source is described plane by plane with offsets and strides, which fits both separate
+// YUV_420_888 planes and the planes inside a single NV21 array.
+public class YuvDownscaler {
+
+    private YuvDownscaler() {}
+
+    // Size of one output side for a source side, kept even so chroma samples aren't split.
+    public static int scaledSize(int size, int factor) {
+        return (size / factor) & ~1;
+    }
+
+    // Writes the width x height region at left, top of the source, shrunk by factor, into out as
+    // NV21. With rotation 90, 180 or 270 the output is rotated clockwise by it, so it is upright
+    // and its width and height swap for 90 and 270. left and top must be even.
+    public static void downscaleToNv21(byte[] yPlane, int yOffset, int yRowStride,
+                                       byte[] uPlane, int uOffset,
+                                       byte[] vPlane, int vOffset,
+                                       int uvRowStride, int uvPixelStride,
+                                       int left, int top, int width, int height,
+                                       int factor, int rotation,
+                                       byte[] out) {
+        if (((left | top) & 1) != 0 || factor < 1) {
+            throw new IllegalArgumentException("Invalid region or factor");
+        }
+        int outWidth = scaledSize(width, factor);
+        int outHeight = scaledSize(height, factor);
+        if (outWidth == 0 || outHeight == 0) {
+            throw new IllegalArgumentException("Region too small for factor " + factor);
+        }
+        if (out.length < YuvPlaneConverter.nv21Size(outWidth, outHeight)) {
+            throw new IllegalArgumentException("Output buffer too small");
+        }
+        boolean swapped = rotation == 90 || rotation == 270;
+        int uprightWidth = swapped ? outHeight : outWidth;
+        int area = factor * factor;
+        int half = area / 2;
+
+        // Luma.
+        for (int y = 0; y < outHeight; y++) {
+            int rowStart = yOffset + (top + y * factor) * yRowStride + left;
+            for (int x = 0; x < outWidth; x++) {
+                int sum = 0;
+                int boxStart = rowStart + x * factor;
+                for (int dy = 0; dy < factor; dy++) {
+                    int offset = boxStart + dy * yRowStride;
+                    for (int dx = 0; dx < factor; dx++) {
+                        sum += yPlane[offset + dx] & 0xff;
+                    }
+                }
+                out[rotatedIndex(x, y, outWidth, outHeight, rotation, uprightWidth)] = (byte) ((sum + half) / area);
+            }
+        }
+
+        // Chroma, written as interleaved VU pairs after the luma plane.
+        int chromaStart = outWidth * outHeight;
+        int chromaWidth = outWidth / 2;
+        int chromaHeight = outHeight / 2;
+        int uprightChromaWidth = uprightWidth / 2;
+        for (int y = 0; y < chromaHeight; y++) {
+            int rowStart = (top / 2 + y * factor) * uvRowStride + (left / 2) * uvPixelStride;
+            for (int x = 0; x < chromaWidth; x++) {
+                int uSum = 0;
+                int vSum = 0;
+                int boxStart = rowStart + x * factor * uvPixelStride;
+                for (int dy = 0; dy < factor; dy++) {
+                    int offset = boxStart + dy * uvRowStride;
+                    for (int dx = 0; dx < factor; dx++) {
+                        uSum += uPlane[uOffset + offset] & 0xff;
+                        vSum += vPlane[vOffset + offset] & 0xff;
+                        offset += uvPixelStride;
+                    }
+                }
+                int index = chromaStart
+                        + 2 * rotatedIndex(x, y, chromaWidth, chromaHeight, rotation, uprightChromaWidth);
+                out[index] = (byte) ((vSum + half) / area);
+                out[index + 1] = (byte) ((uSum + half) / area);
+            }
+        }
+    }
+
+    // Index in an upright plane of the pixel at x, y of a width x height plane rotated clockwise.
+    private static int rotatedIndex(int x, int y, int width, int height, int rotation, int uprightWidth) {
+        switch (rotation) {
+            case 90:
+                return x * uprightWidth + (height - 1 - y);
+            case 180:
+                return (height - 1 - y) * uprightWidth + (width - 1 - x);
+            case 270:
+                return (width - 1 - x) * uprightWidth + y;
+            default:
+                return y * uprightWidth + x;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.google_ml_kit.vision;
+
+import java.nio.ByteBuffer;
+
+// Assembles NV21 frames from the separate Y/U/V planes of a YUV_420_888 camera image, honouring the
+// row and pixel strides of each plane, and crops NV21 frames. Frames are written straight into the
+// destination buffer, so no intermediate concatenated copy of the image is made.
+public class YuvPlaneConverter {
+
+    private YuvPlaneConverter() {}
+
+    public static int nv21Size(int width, int height) {
+        return width * height + 2 * chromaWidth(width) * chromaHeight(height);
+    }
+
+    // Writes the NV21 representation of the planes into out, starting at its current position.
+    // The position is advanced by nv21Size(width, height).
+    public static void toNv21(byte[] yPlane, int yRowStride,
+                              byte[] uPlane, byte[] vPlane, int uvRowStride, int uvPixelStride,
+                              int width, int height,
+                              ByteBuffer out) {
+        toNv21(yPlane, yRowStride, uPlane, vPlane, uvRowStride, uvPixelStride, 0, 0, width, height, out);
+    }
+
+    // Same for the width x height region at left, top of the planes. left and top must be even.
+    public static void toNv21(byte[] yPlane, int yRowStride,
+                              byte[] uPlane, byte[] vPlane, int uvRowStride, int uvPixelStride,
+                              int left, int top, int width, int height,
+                              ByteBuffer out) {
+        if ((left & 1) != 0 || (top & 1) != 0) {
+            throw new IllegalArgumentException("Crop origin must be even");
+        }
+        int chromaLeft = left / 2;
+        int chromaTop = top / 2;
+        if (yRowStride < left + width || uvPixelStride < 1
+                || uvRowStride < (chromaLeft + chromaWidth(width) - 1) * uvPixelStride + 1) {
+            throw new IllegalArgumentException("Invalid plane strides");
+        }
+        if (out.remaining() < nv21Size(width, height)) {
+            throw new IllegalArgumentException("Output buffer too small");
+        }
+
+        // Luma: one bulk copy when rows are tightly packed, otherwise row by row skipping padding.
+        if (yRowStride == width && left == 0) {
+            out.put(yPlane, top * yRowStride, width * height);
+        } else {
+            for (int row = top; row < top + height; row++) {
+                out.put(yPlane, row * yRowStride + left, width);
+            }
+        }
+
+        // Chroma: NV21 interleaves V and U. Planes copied out of the camera buffer no longer share
+        // memory, so whether they came from an NV21 or NV12 layout can't be told apart and each
+        // sample is picked by its pixel stride.
+        int chromaWidth = chromaWidth(width);
+        int chromaHeight = chromaHeight(height);
+        for (int row = chromaTop; row < chromaTop + chromaHeight; row++) {
+            int rowOffset = row * uvRowStride;
+            for (int col = chromaLeft; col < chromaLeft + chromaWidth; col++) {
+                int offset = rowOffset + col * uvPixelStride;
+                out.put(vPlane[offset]);
+                out.put(uPlane[offset]);
+            }
+        }
+    }
+
+    // Writes the width x height region at left, top of an NV21 frame into out, starting at its
+    // current position. left, top, width and height must be even so chroma samples aren't split.
+    public static void cropNv21(byte[] nv21, int frameWidth, int frameHeight,
+                                int left, int top, int width, int height,
+                                ByteBuffer out) {
+        if (((left | top | width | height) & 1) != 0) {
+            throw new IllegalArgumentException("Crop must be aligned to even pixels");
+        }
+        if (left < 0 || top < 0 || left + width > frameWidth || top + height > frameHeight) {
+            throw new IllegalArgumentException("Crop outside of the frame");
+        }
+        if (nv21.length < nv21Size(frameWidth, frameHeight)) {
+            throw new IllegalArgumentException("Frame buffer too small");
+        }
+        if (out.remaining() < nv21Size(width, height)) {
+            throw new IllegalArgumentException("Output buffer too small");
+        }
+
+        for (int row = top; row < top + height; row++) {
+            out.put(nv21, row * frameWidth + left, width);
+        }
+        // Interleaved VU rows, a pair per two pixels, so the luma column offset is the byte offset.
+        int chromaStart = frameWidth * frameHeight;
+        int chromaRowBytes = 2 * chromaWidth(frameWidth);
+        for (int row = top / 2; row < (top + height) / 2; row++) {
+            out.put(nv21, chromaStart + row * chromaRowBytes + left, width);
+        }
+    }
+
+    private static int chromaWidth(int width) {
+        return (width + 1) / 2;
+    }
+
+    private static int chromaHeight(int height) {
+        return (height + 1) / 2;
+    }
+}
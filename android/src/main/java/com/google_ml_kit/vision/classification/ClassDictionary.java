@@ -0,0 +1,50 @@
+package com.google_ml_kit.vision.classification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense integer ids for the class names of a {@link PoseSample} set, assigned in order of first
+ * appearance. Built once when the samples are loaded, so {@link ClassificationResult}s can keep
+ * their confidences in arrays indexed by class id. Immutable.
+ */
+public final class ClassDictionary {
+  private final String[] classNames;
+  private final Map<String, Integer> classIds;
+
+  private ClassDictionary(List<String> classNames) {
+    this.classNames = classNames.toArray(new String[0]);
+    this.classIds = new HashMap<>();
+    for (int i = 0; i < this.classNames.length; i++) {
+      classIds.put(this.classNames[i], i);
+    }
+  }
+
+  public static ClassDictionary fromSamples(List<PoseSample> poseSamples) {
+    List<String> classNames = new ArrayList<>();
+    Map<String, Integer> seen = new HashMap<>();
+    for (PoseSample poseSample : poseSamples) {
+      if (!seen.containsKey(poseSample.getClassName())) {
+        seen.put(poseSample.getClassName(), classNames.size());
+        classNames.add(poseSample.getClassName());
+      }
+    }
+    return new ClassDictionary(classNames);
+  }
+
+  public int size() {
+    return classNames.length;
+  }
+
+  public String getClassName(int classId) {
+    return classNames[classId];
+  }
+
+  /** Returns the id of the given class, or -1 if it isn't in the dictionary. */
+  public int getClassId(String className) {
+    Integer classId = classIds.get(className);
+    return classId != null ? classId : -1;
+  }
+}
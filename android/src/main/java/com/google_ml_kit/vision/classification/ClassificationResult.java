@@ -1,45 +1,101 @@
 package com.google_ml_kit.vision.classification;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
-import static java.util.Collections.max;
-
 /**
  * Represents Pose classification result as outputted by {@link PoseClassifier}. Can be manipulated.
+ *
+ * <p>Confidences are kept in an array indexed by the ids of a {@link ClassDictionary}, so results
+ * can be built and read without boxing or hashing.
  */
 public class ClassificationResult {
-  // For an entry in this map, the key is the class name, and the value is how many times this class
-  // appears in the top K nearest neighbors. The value is in range [0, K] and could be a float after
-  // EMA smoothing. We use this number to represent the confidence of a pose being in this class.
-  private final Map<String, Float> classConfidences;
+  private final ClassDictionary classDictionary;
+  // For each class id, how many times this class appears in the top K nearest neighbors. The value
+  // is in range [0, K] and could be a float after EMA smoothing. We use this number to represent
+  // the confidence of a pose being in this class.
+  private final float[] classConfidences;
+  // Whether a confidence was set for a class. Classes without one are not part of the result.
+  private final boolean[] hasConfidence;
+
+  public ClassificationResult(ClassDictionary classDictionary) {
+    this.classDictionary = classDictionary;
+    this.classConfidences = new float[classDictionary.size()];
+    this.hasConfidence = new boolean[classDictionary.size()];
+  }
 
-  public ClassificationResult() {
-    classConfidences = new HashMap<>();
+  public ClassDictionary getClassDictionary() {
+    return classDictionary;
   }
 
+  /** Names of the classes of this result, in class id order. */
   public Set<String> getAllClasses() {
-    return classConfidences.keySet();
+    Set<String> classes = new LinkedHashSet<>();
+    for (int classId = 0; classId < hasConfidence.length; classId++) {
+      if (hasConfidence[classId]) {
+        classes.add(classDictionary.getClassName(classId));
+      }
+    }
+    return classes;
+  }
+
+  public boolean hasClass(int classId) {
+    return hasConfidence[classId];
+  }
+
+  public float getClassConfidence(int classId) {
+    return classConfidences[classId];
   }
 
   public float getClassConfidence(String className) {
-    return classConfidences.containsKey(className) ? classConfidences.get(className) : 0;
+    int classId = classDictionary.getClassId(className);
+    return classId >= 0 ? classConfidences[classId] : 0;
   }
 
+  /**
+   * Returns the id of the class with the highest confidence, the lowest id among equal ones, or -1
+   * if the result holds no class.
+   */
+  public int getMaxConfidenceClassId() {
+    int maxClassId = -1;
+    for (int classId = 0; classId < classConfidences.length; classId++) {
+      if (hasConfidence[classId]
+          && (maxClassId < 0 || classConfidences[classId] > classConfidences[maxClassId])) {
+        maxClassId = classId;
+      }
+    }
+    return maxClassId;
+  }
+
+  /** Returns the name of {@link #getMaxConfidenceClassId()}, or null if the result is empty. */
   public String getMaxConfidenceClass() {
-    return max(
-        classConfidences.entrySet(),
-        (entry1, entry2) -> (int) (entry1.getValue() - entry2.getValue()))
-        .getKey();
+    int maxClassId = getMaxConfidenceClassId();
+    return maxClassId >= 0 ? classDictionary.getClassName(maxClassId) : null;
+  }
+
+  public void incrementClassConfidence(int classId) {
+    classConfidences[classId]++;
+    hasConfidence[classId] = true;
   }
 
   public void incrementClassConfidence(String className) {
-    classConfidences.put(className,
-        classConfidences.containsKey(className) ? classConfidences.get(className) + 1 : 1);
+    incrementClassConfidence(requireClassId(className));
+  }
+
+  public void putClassConfidence(int classId, float confidence) {
+    classConfidences[classId] = confidence;
+    hasConfidence[classId] = true;
   }
 
   public void putClassConfidence(String className, float confidence) {
-    classConfidences.put(className, confidence);
+    putClassConfidence(requireClassId(className), confidence);
+  }
+
+  private int requireClassId(String className) {
+    int classId = classDictionary.getClassId(className);
+    if (classId < 0) {
+      throw new IllegalArgumentException("Unknown pose class: " + className);
+    }
+    return classId;
   }
 }
@@ -1,22 +1,41 @@
 package com.google_ml_kit.vision.classification;
 
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
-
 /**
  * Runs EMA smoothing over a window with given stream of pose classification results.
+ *
+ * <p>The smoothed confidence of a class is the weighted mean of its confidences in the window,
+ * weighing the newest result 1 and each older one {@code 1 - alpha} times the next newer one.
+ * Rather than re-scanning the window, the weighted sum of each class is updated as results enter
+ * and leave the window, so a result costs O(classes). Per-class state is kept in arrays indexed by
+ * the ids of the results' {@link ClassDictionary}.
  */
 public class EMASmoothing {
   private static final int DEFAULT_WINDOW_SIZE = 10;
   private static final float DEFAULT_ALPHA = 0.2f;
 
   private final int windowSize;
-  private final float alpha;
-  // This is a window of {@link ClassificationResult}s as outputted by the {@link PoseClassifier}.
-  // We run smoothing over this window of size {@link windowSize}.
-  private final Deque<ClassificationResult> window;
+  private final double decay;
+  // Weight the oldest result of a full window would have after one more decay step.
+  private final double evictedWeight;
+  // denominators[n] is the sum of the weights of a window holding n results.
+  private final double[] denominators;
+
+  // Dictionary of the results in the window. Arrays below are indexed by its class ids.
+  private ClassDictionary classDictionary;
+  // Weighted confidence sum of each class over the window.
+  private double[] numerators;
+  // Number of results in the window a class appears in. Classes appearing in none are left out
+  // of the smoothed result.
+  private int[] presence;
+
+  // This is a window of {@link ClassificationResult}s as outputted by the {@link PoseClassifier},
+  // kept as a ring of class id and confidence arrays. We run smoothing over this window of size
+  // {@link windowSize}.
+  private final int[][] windowClassIds;
+  private final float[][] windowConfidences;
+  private final int[] windowClassCounts;
+  private int newest = -1;
+  private int size;
 
   public EMASmoothing() {
     this(DEFAULT_WINDOW_SIZE, DEFAULT_ALPHA);
@@ -24,40 +43,83 @@ public class EMASmoothing {
 
   public EMASmoothing(int windowSize, float alpha) {
     this.windowSize = windowSize;
-    this.alpha = alpha;
-    this.window = new LinkedBlockingDeque<>(windowSize);
+    this.decay = 1.0 - alpha;
+    this.evictedWeight = Math.pow(decay, windowSize);
+    this.denominators = new double[windowSize + 1];
+    double weight = 1;
+    for (int n = 1; n <= windowSize; n++) {
+      denominators[n] = denominators[n - 1] + weight;
+      weight *= decay;
+    }
+    this.windowClassIds = new int[windowSize][];
+    this.windowConfidences = new float[windowSize][];
+    this.windowClassCounts = new int[windowSize];
   }
 
+  /**
+   * Adds a result to the window and returns the smoothed result. A result from a classifier with
+   * another {@link ClassDictionary} than the previous ones restarts smoothing from an empty window.
+   */
   public ClassificationResult getSmoothedResult(ClassificationResult classificationResult) {
-    // If we are at window size, remove the last (oldest) result.
-    if (window.size() == windowSize) {
-      window.pollLast();
+    if (classificationResult.getClassDictionary() != classDictionary) {
+      reset(classificationResult.getClassDictionary());
     }
-    // Insert at the beginning of the window.
-    window.addFirst(classificationResult);
 
-    Set<String> allClasses = new HashSet<>();
-    for (ClassificationResult result : window) {
-      allClasses.addAll(result.getAllClasses());
+    int slot = (newest + 1) % windowSize;
+    // Age the window by one result.
+    for (int id = 0; id < numerators.length; id++) {
+      numerators[id] *= decay;
+    }
+    // If we are at window size, remove the oldest result, which sits in the slot we're about to
+    // reuse.
+    if (size == windowSize) {
+      for (int i = 0; i < windowClassCounts[slot]; i++) {
+        int id = windowClassIds[slot][i];
+        numerators[id] -= evictedWeight * windowConfidences[slot][i];
+        if (--presence[id] == 0) {
+          // Drops the rounding error the subtractions left behind.
+          numerators[id] = 0;
+        }
+      }
+    } else {
+      size++;
     }
 
-    ClassificationResult smoothedResult = new ClassificationResult();
-
-    for (String className : allClasses) {
-      float factor = 1;
-      float topSum = 0;
-      float bottomSum = 0;
-      for (ClassificationResult result : window) {
-        float value = result.getClassConfidence(className);
-
-        topSum += factor * value;
-        bottomSum += factor;
-
-        factor = (float) (factor * (1.0 - alpha));
+    // Insert the new result as the newest one.
+    int count = 0;
+    for (int id = 0; id < numerators.length; id++) {
+      if (classificationResult.hasClass(id)) {
+        float confidence = classificationResult.getClassConfidence(id);
+        windowClassIds[slot][count] = id;
+        windowConfidences[slot][count] = confidence;
+        numerators[id] += confidence;
+        presence[id]++;
+        count++;
       }
-      smoothedResult.putClassConfidence(className, topSum / bottomSum);
     }
+    windowClassCounts[slot] = count;
+    newest = slot;
 
+    ClassificationResult smoothedResult = new ClassificationResult(classDictionary);
+    for (int id = 0; id < numerators.length; id++) {
+      if (presence[id] > 0) {
+        smoothedResult.putClassConfidence(id, (float) (numerators[id] / denominators[size]));
+      }
+    }
     return smoothedResult;
   }
+
+  private void reset(ClassDictionary classDictionary) {
+    this.classDictionary = classDictionary;
+    int classCount = classDictionary.size();
+    numerators = new double[classCount];
+    presence = new int[classCount];
+    for (int slot = 0; slot < windowSize; slot++) {
+      windowClassIds[slot] = new int[classCount];
+      windowConfidences[slot] = new float[classCount];
+      windowClassCounts[slot] = 0;
+    }
+    newest = -1;
+    size = 0;
+  }
 }
@@ -0,0 +1,108 @@
+package com.google_ml_kit.vision.classification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classification of a single frame as returned by {@link PoseClassifierProcessor}. Immutable, so
+ * it can be handed from the classification thread to the thread sending the result.
+ */
+public class PoseClassification {
+
+    /**
+     * A class with its accuracy, the share of the nearest samples that belong to it.
+     */
+    public static class ClassAccuracy {
+        private final int classId;
+        private final String className;
+        private final float accuracy;
+
+        ClassAccuracy(int classId, String className, float accuracy) {
+            this.classId = classId;
+            this.className = className;
+            this.accuracy = accuracy;
+        }
+
+        public int getClassId() {
+            return classId;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        /** In range [0, 1]. */
+        public float getAccuracy() {
+            return accuracy;
+        }
+    }
+
+    private final List<ClassAccuracy> topClasses;
+    private final RepetitionEngine.Snapshot repetitions;
+
+    private PoseClassification(List<ClassAccuracy> topClasses, RepetitionEngine.Snapshot repetitions) {
+        this.topClasses = Collections.unmodifiableList(topClasses);
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Picks the topN classes of a smoothed result by confidence, ties going to the lower class id.
+     * Accuracies are the confidences divided by confidenceRange.
+     */
+    static PoseClassification of(ClassificationResult classificationResult, int confidenceRange,
+                                  int topN, RepetitionEngine.Snapshot repetitions) {
+        ClassDictionary classDictionary = classificationResult.getClassDictionary();
+        boolean[] picked = new boolean[classDictionary.size()];
+        List<ClassAccuracy> topClasses = new ArrayList<>(topN);
+        while (topClasses.size() < topN) {
+            int best = -1;
+            for (int classId = 0; classId < picked.length; classId++) {
+                if (!picked[classId] && classificationResult.hasClass(classId)
+                        && (best < 0 || classificationResult.getClassConfidence(classId)
+                        > classificationResult.getClassConfidence(best))) {
+                    best = classId;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            picked[best] = true;
+            topClasses.add(new ClassAccuracy(
+                    best,
+                    classDictionary.getClassName(best),
+                    classificationResult.getClassConfidence(best) / confidenceRange));
+        }
+        return new PoseClassification(topClasses, repetitions);
+    }
+
+    /** Result of a frame without a pose, carrying only the current rep counts. */
+    static PoseClassification empty(RepetitionEngine.Snapshot repetitions) {
+        return new PoseClassification(new ArrayList<>(), repetitions);
+    }
+
+    /** Id of the most likely class in the classifier's {@link ClassDictionary}, -1 if none. */
+    public int getClassId() {
+        return topClasses.isEmpty() ? -1 : topClasses.get(0).classId;
+    }
+
+    /** Name of the most likely class, null if none. */
+    public String getClassName() {
+        return topClasses.isEmpty() ? null : topClasses.get(0).className;
+    }
+
+    /** Accuracy of the most likely class in range [0, 1], 0 if none. */
+    public float getAccuracy() {
+        return topClasses.isEmpty() ? 0 : topClasses.get(0).accuracy;
+    }
+
+    /** The most likely classes, most likely first. */
+    public List<ClassAccuracy> getTopClasses() {
+        return topClasses;
+    }
+
+    /** Rep counts after this frame, null unless counting reps. */
+    public RepetitionEngine.Snapshot getRepetitions() {
+        return repetitions;
+    }
+}
@@ -1,17 +1,18 @@
 package com.google_ml_kit.vision.classification;
 
-import android.util.Pair;
-
 import com.google.mlkit.vision.common.PointF3D;
 import com.google.mlkit.vision.pose.Pose;
 import com.google.mlkit.vision.pose.PoseLandmark;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import static com.google_ml_kit.vision.classification.PoseEmbedding.getFlippedEmbedding;
 import static com.google_ml_kit.vision.classification.PoseEmbedding.getPoseEmbedding;
-import static com.google_ml_kit.vision.classification.Utils.*;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
@@ -27,25 +28,269 @@ public class PoseClassifier {
   private static final int MEAN_DISTANCE_TOP_K = 10;
   // Note Z has a lower weight as it is generally less accurate than X & Y.
   private static final PointF3D AXES_WEIGHTS = PointF3D.from(1, 1, 0.2f);
+  // From this many samples on the first stage searches a {@link VantagePointTree} instead of
+  // scanning every sample. Below it the scan is cheaper than walking the tree.
+  static final int INDEX_MIN_SAMPLES = 2048;
+  // From this many samples on the first stage is split into shards searched in parallel.
+  public static final int PARALLEL_MIN_SAMPLES = 65536;
+  // Smallest shard worth handing to another core.
+  private static final int MIN_SHARD_SIZE = 8192;
 
   private final List<PoseSample> poseSamples;
+  private final ClassDictionary classDictionary;
+  // Class id of each sample.
+  private final int[] sampleClassIds;
   private final int maxDistanceTopK;
   private final int meanDistanceTopK;
   private final PointF3D axesWeights;
+  // Offsets of the embedding vectors in the order max distances are bounded in.
+  private final int[] vectorOrder;
+  // Contiguous ranges of poseSamples covering all of them, a single one unless searched in
+  // parallel.
+  private final Shard[] shards;
 
   public PoseClassifier(List<PoseSample> poseSamples) {
     this(poseSamples, MAX_DISTANCE_TOP_K, MEAN_DISTANCE_TOP_K, AXES_WEIGHTS);
   }
 
+  /**
+   * @param parallelMinSamples sample count from which {@link #classify} spreads the search over
+   *     all cores, see {@link PoseClassifierCache#setParallelMinSamples}.
+   */
+  public PoseClassifier(List<PoseSample> poseSamples, int parallelMinSamples) {
+    this(poseSamples, MAX_DISTANCE_TOP_K, MEAN_DISTANCE_TOP_K, AXES_WEIGHTS, parallelMinSamples);
+  }
+
   public PoseClassifier(List<PoseSample> poseSamples, int maxDistanceTopK,
       int meanDistanceTopK, PointF3D axesWeights) {
-    this.poseSamples = poseSamples;
+    this(poseSamples, maxDistanceTopK, meanDistanceTopK, axesWeights, PARALLEL_MIN_SAMPLES);
+  }
+
+  /**
+   * @param parallelMinSamples sample count from which {@link #classify} spreads the search over
+   *     all cores. Results are identical either way.
+   */
+  public PoseClassifier(List<PoseSample> poseSamples, int maxDistanceTopK,
+      int meanDistanceTopK, PointF3D axesWeights, int parallelMinSamples) {
+    // Classifiers are shared between sessions by {@link PoseClassifierCache}, so keep them immutable.
+    this.poseSamples = Collections.unmodifiableList(new ArrayList<>(poseSamples));
+    this.classDictionary = ClassDictionary.fromSamples(this.poseSamples);
+    this.sampleClassIds = new int[this.poseSamples.size()];
+    for (int i = 0; i < sampleClassIds.length; i++) {
+      sampleClassIds[i] = classDictionary.getClassId(this.poseSamples.get(i).getClassName());
+    }
     this.maxDistanceTopK = maxDistanceTopK;
     this.meanDistanceTopK = meanDistanceTopK;
     this.axesWeights = axesWeights;
+    this.vectorOrder = discriminativeVectorOrder(this.poseSamples, axesWeights);
+
+    int sampleCount = this.poseSamples.size();
+    int shardCount = sampleCount >= parallelMinSamples
+        ? max(1, min(Runtime.getRuntime().availableProcessors(), sampleCount / MIN_SHARD_SIZE))
+        : 1;
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(
+          this.poseSamples, sampleCount * i / shardCount, sampleCount * (i + 1) / shardCount,
+          axesWeights, vectorOrder);
+    }
+  }
+
+  /**
+   * A contiguous range of samples searched as a unit, through its own index when large enough.
+   */
+  private static final class Shard {
+    final int from;
+    final int to;
+    // Null when the shard is scanned linearly.
+    final VantagePointTree index;
+
+    Shard(List<PoseSample> poseSamples, int from, int to, PointF3D axesWeights,
+        int[] vectorOrder) {
+      this.from = from;
+      this.to = to;
+      this.index = to - from >= INDEX_MIN_SAMPLES
+          ? new VantagePointTree(poseSamples, from, to, axesWeights, vectorOrder)
+          : null;
+    }
+  }
+
+  /**
+   * Searches a range of shards, forking one half off until a single shard is left. Shards keep
+   * their own top K, which are merged on join. As {@link TopK} retains the same entries whatever
+   * order they are offered in, the result matches the sequential search.
+   */
+  private final class ShardSearch extends RecursiveTask<TopK> {
+    private static final long serialVersionUID = 1L;
+
+    private final int fromShard;
+    private final int toShard;
+    private final float[] embedding;
+    private final float[] flippedEmbedding;
+
+    ShardSearch(int fromShard, int toShard, float[] embedding, float[] flippedEmbedding) {
+      this.fromShard = fromShard;
+      this.toShard = toShard;
+      this.embedding = embedding;
+      this.flippedEmbedding = flippedEmbedding;
+    }
+
+    @Override
+    protected TopK compute() {
+      if (toShard - fromShard == 1) {
+        TopK topK = new TopK(maxDistanceTopK);
+        search(shards[fromShard], embedding, flippedEmbedding, topK);
+        return topK;
+      }
+      int middle = (fromShard + toShard) / 2;
+      ShardSearch left = new ShardSearch(fromShard, middle, embedding, flippedEmbedding);
+      left.fork();
+      TopK topK = new ShardSearch(middle, toShard, embedding, flippedEmbedding).compute();
+      topK.offerAll(left.join());
+      return topK;
+    }
+  }
+
+  // Created on first use, so its threads only exist once a classifier searches in parallel.
+  // ForkJoinPool.commonPool() needs API level 24.
+  private static final class ParallelPool {
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Weighted max (L-infinity) distance between two packed embeddings. Does not allocate.
+   */
+  static float maxDistance(float[] embedding, float[] sampleEmbedding, PointF3D axesWeights) {
+    float weightX = axesWeights.getX();
+    float weightY = axesWeights.getY();
+    float weightZ = axesWeights.getZ();
+    float maxDistance = 0;
+    for (int i = 0; i < embedding.length; i += 3) {
+      maxDistance =
+          max(
+              maxDistance,
+              max(
+                  max(
+                      Math.abs((sampleEmbedding[i] - embedding[i]) * weightX),
+                      Math.abs((sampleEmbedding[i + 1] - embedding[i + 1]) * weightY)),
+                  Math.abs((sampleEmbedding[i + 2] - embedding[i + 2]) * weightZ)));
+    }
+    return maxDistance;
+  }
+
+  /**
+   * Min of the weighted max distances of a sample to the original and the flipped embedding, as
+   * long as it doesn't exceed threshold. Scoring stops as soon as both partial maxima exceed
+   * threshold, in which case some value above threshold is returned.
+   *
+   * <p>Vectors are visited in vectorOrder, which holds their offsets in the packed embeddings, so
+   * the vectors most likely to exceed threshold are checked first. A max doesn't round, so the
+   * order doesn't change a distance that is computed in full. Does not allocate.
+   */
+  static float boundedMaxDistance(float[] embedding, float[] flippedEmbedding,
+      float[] sampleEmbedding, PointF3D axesWeights, int[] vectorOrder, float threshold) {
+    float weightX = axesWeights.getX();
+    float weightY = axesWeights.getY();
+    float weightZ = axesWeights.getZ();
+    float originalMax = 0;
+    float flippedMax = 0;
+    for (int i : vectorOrder) {
+      float x = sampleEmbedding[i];
+      float y = sampleEmbedding[i + 1];
+      float z = sampleEmbedding[i + 2];
+      originalMax =
+          max(
+              originalMax,
+              max(
+                  max(
+                      Math.abs((x - embedding[i]) * weightX),
+                      Math.abs((y - embedding[i + 1]) * weightY)),
+                  Math.abs((z - embedding[i + 2]) * weightZ)));
+      flippedMax =
+          max(
+              flippedMax,
+              max(
+                  max(
+                      Math.abs((x - flippedEmbedding[i]) * weightX),
+                      Math.abs((y - flippedEmbedding[i + 1]) * weightY)),
+                  Math.abs((z - flippedEmbedding[i + 2]) * weightZ)));
+      if (originalMax > threshold && flippedMax > threshold) {
+        break;
+      }
+    }
+    return min(originalMax, flippedMax);
+  }
+
+  /**
+   * Orders the embedding vectors by how much they vary across samples, largest weighted standard
+   * deviation of any axis first. Returns the offsets of the vectors in the packed embeddings.
+   */
+  static int[] discriminativeVectorOrder(List<PoseSample> poseSamples, PointF3D axesWeights) {
+    float[] weights = {axesWeights.getX(), axesWeights.getY(), axesWeights.getZ()};
+    double[] sum = new double[PoseEmbedding.EMBEDDING_SIZE];
+    double[] sumOfSquares = new double[PoseEmbedding.EMBEDDING_SIZE];
+    for (PoseSample poseSample : poseSamples) {
+      float[] sampleEmbedding = poseSample.getEmbedding();
+      for (int i = 0; i < sum.length; i++) {
+        sum[i] += sampleEmbedding[i];
+        sumOfSquares[i] += (double) sampleEmbedding[i] * sampleEmbedding[i];
+      }
+    }
+
+    int count = max(1, poseSamples.size());
+    double[] spread = new double[PoseEmbedding.NUM_VECTORS];
+    Integer[] vectors = new Integer[PoseEmbedding.NUM_VECTORS];
+    for (int v = 0; v < vectors.length; v++) {
+      vectors[v] = v;
+      for (int axis = 0; axis < 3; axis++) {
+        int i = v * 3 + axis;
+        double mean = sum[i] / count;
+        double variance = Math.max(0, sumOfSquares[i] / count - mean * mean);
+        spread[v] = Math.max(spread[v], Math.sqrt(variance) * weights[axis]);
+      }
+    }
+    // Stable, so vectors of equal spread keep their layout order.
+    Arrays.sort(vectors, (a, b) -> Double.compare(spread[b], spread[a]));
+
+    int[] vectorOrder = new int[vectors.length];
+    for (int v = 0; v < vectors.length; v++) {
+      vectorOrder[v] = vectors[v] * 3;
+    }
+    return vectorOrder;
   }
 
-  private static List<PointF3D> extractPoseLandmarks(Pose pose) {
+  /**
+   * Weighted sum (L1) distance between two packed embeddings. Does not allocate.
+   */
+  static float sumDistance(float[] embedding, float[] sampleEmbedding, PointF3D axesWeights) {
+    float weightX = axesWeights.getX();
+    float weightY = axesWeights.getY();
+    float weightZ = axesWeights.getZ();
+    float sum = 0;
+    for (int i = 0; i < embedding.length; i += 3) {
+      sum +=
+          Math.abs((sampleEmbedding[i] - embedding[i]) * weightX)
+              + Math.abs((sampleEmbedding[i + 1] - embedding[i + 1]) * weightY)
+              + Math.abs((sampleEmbedding[i + 2] - embedding[i + 2]) * weightZ);
+    }
+    return sum;
+  }
+
+  // Offers the samples of a shard to topK by their max distance.
+  private void search(Shard shard, float[] embedding, float[] flippedEmbedding, TopK topK) {
+    if (shard.index != null) {
+      shard.index.search(embedding, flippedEmbedding, topK);
+      return;
+    }
+    for (int i = shard.from; i < shard.to; i++) {
+      // Set the max distance as min of original and flipped max distance. Samples that can't beat
+      // the current top K are only scored until that is certain.
+      topK.offer(i, boundedMaxDistance(embedding, flippedEmbedding,
+          poseSamples.get(i).getEmbedding(), axesWeights, vectorOrder, topK.threshold()));
+    }
+  }
+
+  static List<PointF3D> extractPoseLandmarks(Pose pose) {
     List<PointF3D> landmarks = new ArrayList<>();
     for (PoseLandmark poseLandmark : pose.getAllPoseLandmarks()) {
       landmarks.add(poseLandmark.getPosition3D());
@@ -63,24 +308,33 @@ public class PoseClassifier {
     return min(maxDistanceTopK, meanDistanceTopK);
   }
 
+  public int getSampleCount() {
+    return poseSamples.size();
+  }
+
+  /** Number of ranges the samples are split into, more than one when searched in parallel. */
+  int getShardCount() {
+    return shards.length;
+  }
+
+  public ClassDictionary getClassDictionary() {
+    return classDictionary;
+  }
+
   public ClassificationResult classify(Pose pose) {
     return classify(extractPoseLandmarks(pose));
   }
 
   public ClassificationResult classify(List<PointF3D> landmarks) {
-    ClassificationResult result = new ClassificationResult();
+    ClassificationResult result = new ClassificationResult(classDictionary);
     // Return early if no landmarks detected.
     if (landmarks.isEmpty()) {
       return result;
     }
 
     // We do flipping on X-axis so we are horizontal (mirror) invariant.
-    List<PointF3D> flippedLandmarks = new ArrayList<>(landmarks);
-    multiplyAll(flippedLandmarks, PointF3D.from(-1, 1, 1));
-
-    List<PointF3D> embedding = getPoseEmbedding(landmarks);
-    List<PointF3D> flippedEmbedding = getPoseEmbedding(flippedLandmarks);
-
+    float[] embedding = getPoseEmbedding(landmarks);
+    float[] flippedEmbedding = getFlippedEmbedding(embedding);
 
     // Classification is done in two stages:
     //  * First we pick top-K samples by MAX distance. It allows to remove samples that are almost
@@ -88,63 +342,33 @@ public class PoseClassifier {
     //  * Then we pick top-K samples by MEAN distance. After outliers are removed, we pick samples
     //    that are closest by average.
 
-    // Keeps max distance on top so we can pop it when top_k size is reached.
-    PriorityQueue<Pair<PoseSample, Float>> maxDistances = new PriorityQueue<>(
-        maxDistanceTopK, (o1, o2) -> -Float.compare(o1.second, o2.second));
-    // Retrieve top K poseSamples by least distance to remove outliers.
-    for (PoseSample poseSample : poseSamples) {
-      List<PointF3D> sampleEmbedding = poseSample.getEmbedding();
-
-      float originalMax = 0;
-      float flippedMax = 0;
-      for (int i = 0; i < embedding.size(); i++) {
-        originalMax =
-            max(
-                originalMax,
-                maxAbs(multiply(subtract(embedding.get(i), sampleEmbedding.get(i)), axesWeights)));
-        flippedMax =
-            max(
-                flippedMax,
-                maxAbs(
-                    multiply(
-                        subtract(flippedEmbedding.get(i), sampleEmbedding.get(i)), axesWeights)));
-      }
-      // Set the max distance as min of original and flipped max distance.
-      maxDistances.add(new Pair<>(poseSample, min(originalMax, flippedMax)));
-      // We only want to retain top n so pop the highest distance.
-      if (maxDistances.size() > maxDistanceTopK) {
-        maxDistances.poll();
-      }
+    // Keeps the top K samples by least max distance to remove outliers. Ties are broken by sample
+    // order, so the same samples are retained whether shards are scanned, indexed or searched in
+    // parallel.
+    TopK maxDistances;
+    if (shards.length == 1) {
+      maxDistances = new TopK(maxDistanceTopK);
+      search(shards[0], embedding, flippedEmbedding, maxDistances);
+    } else {
+      maxDistances = ParallelPool.POOL.invoke(
+          new ShardSearch(0, shards.length, embedding, flippedEmbedding));
     }
 
-    // Keeps higher mean distances on top so we can pop it when top_k size is reached.
-    PriorityQueue<Pair<PoseSample, Float>> meanDistances = new PriorityQueue<>(
-        meanDistanceTopK, (o1, o2) -> -Float.compare(o1.second, o2.second));
-    // Retrive top K poseSamples by least mean distance to remove outliers.
-    for (Pair<PoseSample, Float> sampleDistances : maxDistances) {
-      PoseSample poseSample = sampleDistances.first;
-      List<PointF3D> sampleEmbedding = poseSample.getEmbedding();
-
-      float originalSum = 0;
-      float flippedSum = 0;
-      for (int i = 0; i < embedding.size(); i++) {
-        originalSum += sumAbs(multiply(
-            subtract(embedding.get(i), sampleEmbedding.get(i)), axesWeights));
-        flippedSum += sumAbs(
-            multiply(subtract(flippedEmbedding.get(i), sampleEmbedding.get(i)), axesWeights));
-      }
+    // Keeps the top K samples by least mean distance to remove outliers.
+    TopK meanDistances = new TopK(meanDistanceTopK);
+    for (int i = 0; i < maxDistances.size(); i++) {
+      int sampleIndex = maxDistances.index(i);
+      float[] sampleEmbedding = poseSamples.get(sampleIndex).getEmbedding();
+
+      float originalSum = sumDistance(embedding, sampleEmbedding, axesWeights);
+      float flippedSum = sumDistance(flippedEmbedding, sampleEmbedding, axesWeights);
       // Set the mean distance as min of original and flipped mean distances.
-      float meanDistance = min(originalSum, flippedSum) / (embedding.size() * 2);
-      meanDistances.add(new Pair<>(poseSample, meanDistance));
-      // We only want to retain top k so pop the highest mean distance.
-      if (meanDistances.size() > meanDistanceTopK) {
-        meanDistances.poll();
-      }
+      float meanDistance = min(originalSum, flippedSum) / ((embedding.length / 3) * 2);
+      meanDistances.offer(sampleIndex, meanDistance);
     }
 
-    for (Pair<PoseSample, Float> sampleDistances : meanDistances) {
-      String className = sampleDistances.first.getClassName();
-      result.incrementClassConfidence(className);
+    for (int i = 0; i < meanDistances.size(); i++) {
+      result.incrementClassConfidence(sampleClassIds[meanDistances.index(i)]);
     }
 
     return result;
@@ -0,0 +1,176 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Process wide cache of {@link PoseClassifier}s keyed by the sample asset they were loaded from.
+ *
+ * <p>A {@link PoseClassifier} is immutable once built, so it can be shared by every detector
+ * session. Entries are evicted least recently used first once either the entry count or the
+ * estimated memory footprint exceeds its limit.
+ *
+ * <p>Classifiers are loaded outside the cache lock, so a cold load doesn't hold up hits of other
+ * assets. Sessions asking for an asset that is being loaded wait for that load instead of starting
+ * their own. Failed loads are not cached, the next session asking for the asset tries again.
+ */
+public class PoseClassifierCache {
+  private static final int DEFAULT_MAX_ENTRIES = 4;
+  private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+  // Rough per sample overhead on top of the embedding: object headers, name and references.
+  private static final int SAMPLE_OVERHEAD_BYTES = 128;
+
+  private static final PoseClassifierCache INSTANCE = new PoseClassifierCache();
+
+  /** Builds a classifier on a cache miss. */
+  public interface Loader {
+    /**
+     * Builds the classifier with the given parallel search threshold, see
+     * {@link PoseClassifier#PoseClassifier(java.util.List, int)}. Throws {@link IOException} if
+     * the samples can't be loaded or there are none.
+     */
+    PoseClassifier load(int parallelMinSamples) throws IOException;
+  }
+
+  // Access ordered so iteration starts at the least recently used entry.
+  private final LinkedHashMap<String, PoseClassifier> classifiers =
+      new LinkedHashMap<>(8, 0.75f, true);
+  // Loads in progress by asset.
+  private final Map<String, FutureTask<PoseClassifier>> loading = new HashMap<>();
+  private int maxEntries;
+  private long maxBytes;
+  private long currentBytes;
+  private int parallelMinSamples = PoseClassifier.PARALLEL_MIN_SAMPLES;
+
+  public static PoseClassifierCache getInstance() {
+    return INSTANCE;
+  }
+
+  public PoseClassifierCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+  }
+
+  public PoseClassifierCache(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the cached classifier for the given asset, or builds and caches it with the loader.
+   * Throws the loader's {@link IOException} if the load fails, in which case nothing is cached.
+   */
+  public PoseClassifier get(String assetName, Loader loader) throws IOException {
+    FutureTask<PoseClassifier> load;
+    boolean loadHere = false;
+    synchronized (this) {
+      PoseClassifier poseClassifier = classifiers.get(assetName);
+      if (poseClassifier != null) {
+        return poseClassifier;
+      }
+      load = loading.get(assetName);
+      if (load == null) {
+        int loadParallelMinSamples = parallelMinSamples;
+        load = new FutureTask<>(() -> loader.load(loadParallelMinSamples));
+        loading.put(assetName, load);
+        loadHere = true;
+      }
+    }
+
+    PoseClassifier poseClassifier = null;
+    try {
+      if (loadHere) {
+        load.run();
+      }
+      poseClassifier = Uninterruptibles.getUninterruptibly(load);
+      return poseClassifier;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      if (loadHere) {
+        synchronized (this) {
+          loading.remove(assetName);
+          if (poseClassifier != null) {
+            classifiers.put(assetName, poseClassifier);
+            currentBytes += estimateBytes(poseClassifier);
+            trimToLimits(assetName);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the eviction limits. Use {@link Integer#MAX_VALUE} or {@link Long#MAX_VALUE} to only
+   * bound by the other one.
+   */
+  public synchronized void setLimits(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    trimToLimits(null);
+  }
+
+  /**
+   * Sets the sample count from which classifiers search their samples on all cores, see
+   * {@link PoseClassifier#PARALLEL_MIN_SAMPLES} for the default. Cached classifiers are dropped so
+   * they are rebuilt with it; loads already running keep the previous value.
+   */
+  public synchronized void setParallelMinSamples(int parallelMinSamples) {
+    if (parallelMinSamples != this.parallelMinSamples) {
+      this.parallelMinSamples = parallelMinSamples;
+      clear();
+    }
+  }
+
+  public synchronized int getParallelMinSamples() {
+    return parallelMinSamples;
+  }
+
+  public synchronized void clear() {
+    classifiers.clear();
+    currentBytes = 0;
+  }
+
+  public synchronized int size() {
+    return classifiers.size();
+  }
+
+  public synchronized long sizeBytes() {
+    return currentBytes;
+  }
+
+  public static long estimateBytes(PoseClassifier poseClassifier) {
+    return (long) poseClassifier.getSampleCount()
+        * (PoseEmbedding.EMBEDDING_SIZE * 4 + SAMPLE_OVERHEAD_BYTES);
+  }
+
+  // Evicts least recently used entries until within limits. The entry that was just added is kept
+  // even if it alone exceeds the limits, as the caller is about to use it.
+  private void trimToLimits(String keep) {
+    Iterator<Map.Entry<String, PoseClassifier>> iterator = classifiers.entrySet().iterator();
+    while ((classifiers.size() > maxEntries || currentBytes > maxBytes) && iterator.hasNext()) {
+      Map.Entry<String, PoseClassifier> entry = iterator.next();
+      if (entry.getKey().equals(keep)) {
+        continue;
+      }
+      currentBytes -= estimateBytes(entry.getValue());
+      iterator.remove();
+    }
+  }
+}
@@ -7,15 +7,15 @@ import android.util.Log;
 import androidx.annotation.WorkerThread;
 
 import com.google.common.base.Preconditions;
+import com.google.mlkit.vision.common.PointF3D;
 import com.google.mlkit.vision.pose.Pose;
-import com.google_ml_kit.vision.PoseDataStorage;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 /**
  * Accepts a stream of {@link Pose} for classification
@@ -27,6 +27,8 @@ public class PoseClassifierProcessor {
     // private static final String POSE_SAMPLES_FILE = "pose/fitness_poses_csvs_out_without_outliers.csv";
     // private static final String POSE_SAMPLES_FILE = "pose/fitness_poses_csvs_out_with_outliers.csv";
     //  private static final String POSE_SAMPLES_FILE = "pose/beginners_poses_csvs_out.csv";
+    // Precompiled samples are looked up next to the csv, see {@link PoseSampleIndex}.
+    private static final String POSE_INDEX_EXTENSION = ".bin";
 
     private static final String PUSHUPS_CLASS = "pushups_down";
     private static final String SQUATS_CLASS = "squats_down";
@@ -34,19 +36,34 @@ public class PoseClassifierProcessor {
             PUSHUPS_CLASS, SQUATS_CLASS
     };
 
+    // Number of most likely classes reported per pose.
+    public static final int TOP_CLASSES = 3;
+
     final private EMASmoothing emaSmoothing;
-    private ArrayList<RepetitionCounter> repCounters;
+    private RepetitionEngine repetitionEngine;
     private PoseClassifier poseClassifier;
-    private String currentActivityClass;
+    // Stage durations of the last processed pose, in nanoseconds.
+    private long lastClassificationNanos;
+    private long lastSmoothingNanos;
+    private long lastRepCountingNanos;
 
     @WorkerThread
     public PoseClassifierProcessor(Context context, boolean isActivity) {
+        this(context, isActivity, null);
+    }
+
+    /**
+     * @param repThresholds rep counting thresholds of classes, overriding the defaults of the
+     *     built-in exercises or adding classes to count. May be null.
+     */
+    @WorkerThread
+    public PoseClassifierProcessor(Context context, boolean isActivity,
+                                   Map<String, RepetitionEngine.Thresholds> repThresholds) {
         Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
         emaSmoothing = new EMASmoothing();
 
         if (isActivity) {
-            repCounters = new ArrayList<>();
-            loadPoseSamplesWithActivity(context);
+            loadPoseSamplesWithActivity(context, repThresholds);
         } else {
             loadPoseSamples(context);
         }
@@ -55,132 +72,139 @@ public class PoseClassifierProcessor {
     }
 
     private void loadPoseSamples(Context context) {
-        List<PoseSample> poseSamples = new ArrayList<>();
-        try {
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(context.getAssets().open(POSE_SAMPLES_FILE)));
-            String csvLine = reader.readLine();
-            while (csvLine != null) {
-                // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
-                PoseSample poseSample = PoseSample.getPoseSample(csvLine, ",");
-                if (poseSample != null) {
-                    poseSamples.add(poseSample);
-                }
-                csvLine = reader.readLine();
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error when loading pose samples.\n" + e);
+        poseClassifier = getPoseClassifier(context, POSE_SAMPLES_FILE);
+    }
+
+    private void loadPoseSamplesWithActivity(Context context,
+                                             Map<String, RepetitionEngine.Thresholds> repThresholds) {
+        poseClassifier = getPoseClassifier(context, POSE_ACTIVITY);
+
+        Map<String, RepetitionEngine.Thresholds> thresholdsByClass = new LinkedHashMap<>();
+        for (String className : POSE_CLASSES) {
+            thresholdsByClass.put(className, new RepetitionEngine.Thresholds(
+                    RepetitionCounter.DEFAULT_ENTER_THRESHOLD, RepetitionCounter.DEFAULT_EXIT_THRESHOLD));
         }
-        poseClassifier = new PoseClassifier(poseSamples);
+        if (repThresholds != null) {
+            thresholdsByClass.putAll(repThresholds);
+        }
+        repetitionEngine = new RepetitionEngine(thresholdsByClass);
     }
 
-    private void loadPoseSamplesWithActivity(Context context) {
-        List<PoseSample> poseSamples = new ArrayList<>();
-        RepetitionCounter.numRepeats = 0;
+    // Classifiers are immutable and shared by all sessions, so only the first session pays for
+    // loading a sample set. A failed load leaves this session without samples, like before the
+    // cache, and the next session tries again.
+    private static PoseClassifier getPoseClassifier(Context context, String csvFile) {
         try {
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(context.getAssets().open(POSE_ACTIVITY)));
-            String csvLine = reader.readLine();
-            while (csvLine != null) {
-                // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
-                PoseSample poseSample = PoseSample.getPoseSample(csvLine, ",");
-                if (poseSample != null) {
-                    poseSamples.add(poseSample);
-                }
-                csvLine = reader.readLine();
-            }
+            return PoseClassifierCache.getInstance().get(
+                    csvFile, parallelMinSamples ->
+                            new PoseClassifier(loadPoseSamples(context, csvFile), parallelMinSamples));
         } catch (IOException e) {
             Log.e(TAG, "Error when loading pose samples.\n" + e);
+            return new PoseClassifier(new ArrayList<>());
         }
-        poseClassifier = new PoseClassifier(poseSamples);
+    }
 
-        for (String className : POSE_CLASSES) {
-            repCounters.add(new RepetitionCounter(className));
+    // Loads the precompiled {@link PoseSampleIndex} next to the given csv asset if there is one
+    // stamped with the csv's length, otherwise parses the csv itself. The csv is only opened for
+    // its length, see PoseSampleIndex for why that's enough. Throws if there are no samples.
+    private static List<PoseSample> loadPoseSamples(Context context, String csvFile) throws IOException {
+        long csvLength;
+        try (InputStream in = context.getAssets().open(csvFile)) {
+            // Asset streams report the uncompressed bytes left, compressed asset or not.
+            csvLength = in.available();
+        }
+
+        String indexFile = csvFile.substring(0, csvFile.lastIndexOf('.')) + POSE_INDEX_EXTENSION;
+        List<PoseSample> poseSamples;
+        try (InputStream in = context.getAssets().open(indexFile)) {
+            poseSamples = PoseSampleIndex.read(in, csvLength);
+        } catch (IOException e) {
+            Log.w(TAG, "No usable pose sample index " + indexFile + ", falling back to csv.\n" + e);
+            try (InputStream in = context.getAssets().open(csvFile)) {
+                poseSamples = PoseSampleIndex.readCsv(in);
+            }
+        }
+        if (poseSamples.isEmpty()) {
+            throw new IOException("No valid pose samples in " + csvFile);
         }
+        return poseSamples;
+    }
 
+    /**
+     * Given a new {@link Pose} input, returns its smoothed classification with the
+     * {@link #TOP_CLASSES} most likely classes. Empty when no pose was found.
+     */
+    @WorkerThread
+    public PoseClassification getPoseResult(Pose pose) {
+        return getPoseResult(PoseClassifier.extractPoseLandmarks(pose));
     }
 
     /**
-     * Given a new {@link Pose} input, returns a list of formatted {@link String}s with Pose
-     * classification results.
-     *
-     * <p>Currently it returns up to 2 strings as following:
-     * 1: PoseClass : [0.0-1.0] confidence
+     * Like {@link #getPoseResult(Pose)} for landmark positions in landmark type order, e.g. after
+     * temporal filtering. Empty when there are no landmarks.
      */
     @WorkerThread
-    public List<String> getPoseResult(Pose pose) {
+    public PoseClassification getPoseResult(List<PointF3D> landmarks) {
         Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
-        List<String> result = new ArrayList<>();
 
-        ClassificationResult classification = poseClassifier.classify(pose);
+        long start = System.nanoTime();
+        ClassificationResult classification = poseClassifier.classify(landmarks);
+        long classified = System.nanoTime();
         classification = emaSmoothing.getSmoothedResult(classification);
+        lastClassificationNanos = classified - start;
+        lastSmoothingNanos = System.nanoTime() - classified;
 
-        if (pose.getAllPoseLandmarks().isEmpty()) {
-            return result;
-        }
-
-        // Add maxConfidence class of current frame to result if pose is found.
-        if (!pose.getAllPoseLandmarks().isEmpty()) {
-            String maxConfidenceClass = classification.getMaxConfidenceClass();
-            float poseAccuracy = classification.getClassConfidence(maxConfidenceClass) / poseClassifier.confidenceRange();
-
-            // THESE ARE REQUIRED IN FLUTTER
-            // -----------------------------------------------------------------------------------
-            // Log.i("POSE DETECTED: ", maxConfidenceClass);
-            // Log.i("POSE ACCURACY: ", String.format(Locale.US, "%.2f", poseAccuracy));
-            // -----------------------------------------------------------------------------------
-            //
-            PoseDataStorage.setData(maxConfidenceClass, Double.parseDouble(String.format(Locale.US, "%.2f", poseAccuracy)));
+        if (landmarks.isEmpty()) {
+            return PoseClassification.empty(null);
         }
+        return PoseClassification.of(classification, poseClassifier.confidenceRange(), TOP_CLASSES, null);
+    }
 
-        return result;
+    /**
+     * Like {@link #getPoseResult}, and counts reps of the activity classes. The result carries the
+     * rep counts after this pose.
+     */
+    @WorkerThread
+    public PoseClassification getPoseResultWithReps(Pose pose) {
+        return getPoseResultWithReps(PoseClassifier.extractPoseLandmarks(pose));
     }
 
+    /**
+     * Like {@link #getPoseResultWithReps(Pose)} for landmark positions in landmark type order.
+     */
     @WorkerThread
-    public List<String> getPoseResultWithReps(Pose pose) {
+    public PoseClassification getPoseResultWithReps(List<PointF3D> landmarks) {
         Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
-        List<String> result = new ArrayList<>();
 
-        ClassificationResult classification = poseClassifier.classify(pose);
+        long start = System.nanoTime();
+        ClassificationResult classification = poseClassifier.classify(landmarks);
+        long classified = System.nanoTime();
         classification = emaSmoothing.getSmoothedResult(classification);
+        lastClassificationNanos = classified - start;
+        lastSmoothingNanos = System.nanoTime() - classified;
+        lastRepCountingNanos = 0;
 
-        if (pose.getAllPoseLandmarks().isEmpty()) {
-            return result;
+        if (landmarks.isEmpty()) {
+            return PoseClassification.empty(repetitionEngine.getSnapshot());
         }
 
-        for (RepetitionCounter repCounter : repCounters) {
-            int repsBefore = repCounter.getNumRepeats();
-
-            if (repsBefore <= 1) {
-                repCounter.addClassificationResult(classification);
-                currentActivityClass = repCounter.getClassName();
-            } else {
-                if (repCounter.getClassName().equals(currentActivityClass)) {
-                    int repsAfter = repCounter.addClassificationResult(classification);
-                    if (repsAfter > repsBefore) {
-                        break;
-                    }
-                }
-            }
-
+        long repCountingStart = System.nanoTime();
+        repetitionEngine.addClassificationResult(classification);
+        lastRepCountingNanos = System.nanoTime() - repCountingStart;
 
-        }
+        return PoseClassification.of(
+                classification, poseClassifier.confidenceRange(), TOP_CLASSES, repetitionEngine.getSnapshot());
+    }
 
-        // Add maxConfidence class of current frame to result if pose is found.
-        if (!pose.getAllPoseLandmarks().isEmpty()) {
-            String maxConfidenceClass = classification.getMaxConfidenceClass();
-            float poseAccuracy = classification.getClassConfidence(maxConfidenceClass) / poseClassifier.confidenceRange();
-
-            // THESE ARE REQUIRED IN FLUTTER
-            // -----------------------------------------------------------------------------------
-            // Log.i("POSE DETECTED: ", maxConfidenceClass);
-            // Log.i("POSE ACCURACY: ", String.format(Locale.US, "%.2f", poseAccuracy));
-            // -----------------------------------------------------------------------------------
-            //
-            PoseDataStorage.setData(maxConfidenceClass, Double.parseDouble(String.format(Locale.US, "%.2f", poseAccuracy)));
-        }
+    public long getLastClassificationNanos() {
+        return lastClassificationNanos;
+    }
 
-        return result;
+    public long getLastSmoothingNanos() {
+        return lastSmoothingNanos;
     }
 
+    public long getLastRepCountingNanos() {
+        return lastRepCountingNanos;
+    }
 }
@@ -10,14 +10,50 @@ import java.util.List;
 
 /**
  * Generates embedding for given list of Pose landmarks.
+ *
+ * <p>The embedding is packed into a flat float array as X1,Y1,Z1,X2,Y2,Z2... so it can be scanned
+ * by {@link PoseClassifier} without allocating a {@link PointF3D} per vector.
  */
 public class PoseEmbedding {
+  // Number of 3D vectors in an embedding.
+  public static final int NUM_VECTORS = 23;
+  // Number of floats in a packed embedding.
+  public static final int EMBEDDING_SIZE = NUM_VECTORS * 3;
+
   // Multiplier to apply to the torso to get minimal body size. Picked this by experimentation.
   private static final float TORSO_MULTIPLIER = 2.5f;
 
-  public static List<PointF3D> getPoseEmbedding(List<PointF3D> landmarks) {
+  public static float[] getPoseEmbedding(List<PointF3D> landmarks) {
     List<PointF3D> normalizedLandmarks = normalize(landmarks);
-    return getEmbedding(normalizedLandmarks);
+    return pack(getEmbedding(normalizedLandmarks));
+  }
+
+  /**
+   * Returns the embedding of the landmarks mirrored on the X axis, given the embedding of the
+   * landmarks themselves.
+   *
+   * <p>Mirroring doesn't change the pose size, and every vector is a difference of landmarks, so
+   * the mirrored embedding is the original one with X negated. Landmarks keep their left and right
+   * labels when mirrored, so no vectors are swapped. This gives the same values as computing the
+   * embedding of the mirrored landmarks, without running normalization again.
+   */
+  public static float[] getFlippedEmbedding(float[] embedding) {
+    float[] flipped = embedding.clone();
+    for (int i = 0; i < flipped.length; i += 3) {
+      flipped[i] = -flipped[i];
+    }
+    return flipped;
+  }
+
+  private static float[] pack(List<PointF3D> embedding) {
+    float[] packed = new float[embedding.size() * 3];
+    for (int i = 0; i < embedding.size(); i++) {
+      PointF3D vector = embedding.get(i);
+      packed[i * 3] = vector.getX();
+      packed[i * 3 + 1] = vector.getY();
+      packed[i * 3 + 2] = vector.getZ();
+    }
+    return packed;
   }
 
   private static List<PointF3D> normalize(List<PointF3D> landmarks) {
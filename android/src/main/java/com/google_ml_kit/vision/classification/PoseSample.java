@@ -16,7 +16,8 @@ public class PoseSample {
 
   private final String name;
   private final String className;
-  private final List<PointF3D> embedding;
+  // Packed as X1,Y1,Z1,X2,Y2,Z2... see {@link PoseEmbedding}.
+  private final float[] embedding;
 
   public PoseSample(String name, String className, List<PointF3D> landmarks) {
     this.name = name;
@@ -24,6 +25,15 @@ public class PoseSample {
     this.embedding = PoseEmbedding.getPoseEmbedding(landmarks);
   }
 
+  /**
+   * Creates a sample from an already computed embedding, e.g. one read by {@link PoseSampleIndex}.
+   */
+  public PoseSample(String name, String className, float[] embedding) {
+    this.name = name;
+    this.className = className;
+    this.embedding = embedding;
+  }
+
   public String getName() {
     return name;
   }
@@ -32,12 +42,15 @@ public class PoseSample {
     return className;
   }
 
-  public List<PointF3D> getEmbedding() {
+  public float[] getEmbedding() {
     return embedding;
   }
 
   public static PoseSample getPoseSample(String csvLine, String separator) {
-    List<String> tokens = Splitter.onPattern(separator).splitToList(csvLine);
+    // Plain character splitting avoids running a regex over every row.
+    Splitter splitter = separator.length() == 1
+        ? Splitter.on(separator.charAt(0)) : Splitter.onPattern(separator);
+    List<String> tokens = splitter.splitToList(csvLine);
     // Format is expected to be Name,Class,X1,Y1,Z1,X2,Y2,Z2...
     // + 2 is for Name & Class.
     if (tokens.size() != (NUM_LANDMARKS * NUM_DIMS) + 2) {
@@ -0,0 +1,224 @@
+package com.google_ml_kit.vision.classification;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary format for a set of {@link PoseSample}s with precomputed embeddings.
+ *
+ * <p>Loading the CSV samples means tokenizing ~100 floats per row and computing the embedding of
+ * every sample. This format stores the embeddings directly so a sample set can be bulk-read at
+ * startup. Layout (big-endian):
+ *
+ * <pre>
+ *   int     MAGIC
+ *   int     VERSION
+ *   int     embedding size (floats per sample)
+ *   int     byte length of the source csv
+ *   int     CRC-32 of the source csv
+ *   int     class count, followed by that many strings
+ *   int     sample count
+ *   string  sample name        x sample count
+ *   short   sample class id    x sample count
+ *   float   embedding          x sample count x embedding size
+ * </pre>
+ *
+ * <p>Strings are stored as an unsigned short byte length followed by UTF-8 bytes.
+ *
+ * <p>An index only applies to the exact CSV it was generated from, which it stamps with the CSV's
+ * length and checksum. At startup only the length is compared, as reading the CSV to checksum it
+ * would cost much of what the index saves. A CSV edited to another length falls back to parsing
+ * the CSV instead of silently using the old samples. Edits keeping the length are caught at build
+ * time: the tests check the bundled indexes against the checksum of their CSVs. Indexes are
+ * generated with the {@code poseSampleIndex} task of the benchmarks project.
+ */
+public class PoseSampleIndex {
+  // "PSIX"
+  private static final int MAGIC = 0x50534958;
+  // Bump whenever the layout or {@link PoseEmbedding} changes so stale files are rejected.
+  private static final int VERSION = 2;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private PoseSampleIndex() {}
+
+  /**
+   * Reads the samples of a csv of the given byte length from its index. Throws
+   * {@link IOException} if the data is not a valid index for the current embedding or was
+   * generated from a csv of another length, so callers can fall back to the CSV.
+   */
+  public static List<PoseSample> read(InputStream inputStream, long csvLength) throws IOException {
+    return read(ByteBuffer.wrap(readFully(inputStream)), csvLength, null);
+  }
+
+  /**
+   * Same, checking that the index was generated from exactly this csv.
+   */
+  public static List<PoseSample> read(InputStream inputStream, byte[] csv) throws IOException {
+    return read(ByteBuffer.wrap(readFully(inputStream)), csv);
+  }
+
+  public static List<PoseSample> read(ByteBuffer buffer, byte[] csv) throws IOException {
+    return read(buffer, csv.length, csv);
+  }
+
+  // Checks the checksum too when csv is not null.
+  private static List<PoseSample> read(ByteBuffer buffer, long csvLength, byte[] csv)
+      throws IOException {
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a pose sample index");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported pose sample index version " + version);
+      }
+      int embeddingSize = buffer.getInt();
+      if (embeddingSize != PoseEmbedding.EMBEDDING_SIZE) {
+        throw new IOException("Pose sample index has embedding size " + embeddingSize);
+      }
+      int storedCsvLength = buffer.getInt();
+      int csvChecksum = buffer.getInt();
+      if (storedCsvLength != csvLength || (csv != null && csvChecksum != checksum(csv))) {
+        throw new IOException("Pose sample index is stale, its csv has changed");
+      }
+
+      int classCount = buffer.getInt();
+      String[] classNames = new String[classCount];
+      for (int i = 0; i < classCount; i++) {
+        classNames[i] = readString(buffer);
+      }
+
+      int sampleCount = buffer.getInt();
+      String[] names = new String[sampleCount];
+      for (int i = 0; i < sampleCount; i++) {
+        names[i] = readString(buffer);
+      }
+      short[] classIds = new short[sampleCount];
+      buffer.asShortBuffer().get(classIds);
+      buffer.position(buffer.position() + sampleCount * 2);
+
+      float[] embeddings = new float[sampleCount * embeddingSize];
+      buffer.asFloatBuffer().get(embeddings);
+
+      List<PoseSample> poseSamples = new ArrayList<>(sampleCount);
+      for (int i = 0; i < sampleCount; i++) {
+        float[] embedding = new float[embeddingSize];
+        System.arraycopy(embeddings, i * embeddingSize, embedding, 0, embeddingSize);
+        poseSamples.add(new PoseSample(names[i], classNames[classIds[i]], embedding));
+      }
+      return poseSamples;
+    } catch (RuntimeException e) {
+      // Truncated buffer or out of range class id.
+      throw new IOException("Corrupt pose sample index", e);
+    }
+  }
+
+  /**
+   * Writes the index of the given csv, returns the number of samples written.
+   */
+  public static int write(byte[] csv, OutputStream outputStream) throws IOException {
+    List<PoseSample> poseSamples = readCsv(new ByteArrayInputStream(csv));
+    Map<String, Integer> classIds = new HashMap<>();
+    List<String> classNames = new ArrayList<>();
+    for (PoseSample poseSample : poseSamples) {
+      if (!classIds.containsKey(poseSample.getClassName())) {
+        classIds.put(poseSample.getClassName(), classNames.size());
+        classNames.add(poseSample.getClassName());
+      }
+    }
+    if (classNames.size() > Short.MAX_VALUE) {
+      throw new IOException("Too many pose classes: " + classNames.size());
+    }
+
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(PoseEmbedding.EMBEDDING_SIZE);
+    out.writeInt(csv.length);
+    out.writeInt(checksum(csv));
+    out.writeInt(classNames.size());
+    for (String className : classNames) {
+      writeString(out, className);
+    }
+    out.writeInt(poseSamples.size());
+    for (PoseSample poseSample : poseSamples) {
+      writeString(out, poseSample.getName());
+    }
+    for (PoseSample poseSample : poseSamples) {
+      out.writeShort(classIds.get(poseSample.getClassName()));
+    }
+    for (PoseSample poseSample : poseSamples) {
+      for (float value : poseSample.getEmbedding()) {
+        out.writeFloat(value);
+      }
+    }
+    out.flush();
+    return poseSamples.size();
+  }
+
+  /**
+   * Reads samples in the CSV format understood by {@link PoseSample#getPoseSample}, skipping
+   * invalid lines.
+   */
+  public static List<PoseSample> readCsv(InputStream inputStream) throws IOException {
+    List<PoseSample> poseSamples = new ArrayList<>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
+    String csvLine = reader.readLine();
+    while (csvLine != null) {
+      // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
+      PoseSample poseSample = PoseSample.getPoseSample(csvLine, ",");
+      if (poseSample != null) {
+        poseSamples.add(poseSample);
+      }
+      csvLine = reader.readLine();
+    }
+    return poseSamples;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getShort() & 0xFFFF;
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IOException("String too long: " + value);
+    }
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static int checksum(byte[] csv) {
+    CRC32 crc = new CRC32();
+    crc.update(csv, 0, csv.length);
+    return (int) crc.getValue();
+  }
+
+  static byte[] readFully(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(inputStream.available(), 8192));
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = inputStream.read(chunk)) != -1) {
+      out.write(chunk, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
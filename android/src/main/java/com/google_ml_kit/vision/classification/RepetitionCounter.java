@@ -6,15 +6,18 @@ package com.google_ml_kit.vision.classification;
 public class RepetitionCounter {
     // These thresholds can be tuned in conjunction with the Top K values in {@link PoseClassifier}.
     // The default Top K value is 10 so the range here is [0-10].
-    private static final float DEFAULT_ENTER_THRESHOLD = 6f;
-    private static final float DEFAULT_EXIT_THRESHOLD = 4f;
+    public static final float DEFAULT_ENTER_THRESHOLD = 6f;
+    public static final float DEFAULT_EXIT_THRESHOLD = 4f;
 
     private final String className;
     private final float enterThreshold;
     private final float exitThreshold;
 
-    static public int numRepeats;
+    private int numRepeats;
     private boolean poseEntered;
+    // Id of className in the dictionary of the last result, resolved once per dictionary.
+    private ClassDictionary classDictionary;
+    private int classId = -1;
 
     public RepetitionCounter(String className) {
         this(className, DEFAULT_ENTER_THRESHOLD, DEFAULT_EXIT_THRESHOLD);
@@ -35,7 +38,11 @@ public class RepetitionCounter {
      * @return number of reps.
      */
     public int addClassificationResult(ClassificationResult classificationResult) {
-        float poseConfidence = classificationResult.getClassConfidence(className);
+        if (classificationResult.getClassDictionary() != classDictionary) {
+            classDictionary = classificationResult.getClassDictionary();
+            classId = classDictionary.getClassId(className);
+        }
+        float poseConfidence = classId >= 0 ? classificationResult.getClassConfidence(classId) : 0;
 
         if (!poseEntered) {
             poseEntered = poseConfidence > enterThreshold;
@@ -57,4 +64,9 @@ public class RepetitionCounter {
     public int getNumRepeats() {
         return numRepeats;
     }
+
+    public void reset() {
+        numRepeats = 0;
+        poseEntered = false;
+    }
 }
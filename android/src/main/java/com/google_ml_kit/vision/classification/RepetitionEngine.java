@@ -0,0 +1,194 @@
+package com.google_ml_kit.vision.classification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts reps of several exercises for one session.
+ *
+ * <p>Each exercise class has its own {@link RepetitionCounter} with its own thresholds, and every
+ * classification result is fed to all of them. Consecutive reps of the same class form a set; a
+ * rep of another class, or {@link #startNewSet()}, closes the current set. An engine holds no
+ * shared state, so sessions can count concurrently. It is not thread safe itself.
+ */
+public class RepetitionEngine {
+
+    /**
+     * Confidence a class has to exceed to enter its pose, and to fall below to complete a rep.
+     */
+    public static class Thresholds {
+        private final float enter;
+        private final float exit;
+
+        public Thresholds(float enter, float exit) {
+            this.enter = enter;
+            this.exit = exit;
+        }
+
+        public float getEnter() {
+            return enter;
+        }
+
+        public float getExit() {
+            return exit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Thresholds)) {
+                return false;
+            }
+            Thresholds other = (Thresholds) o;
+            return Float.compare(enter, other.enter) == 0 && Float.compare(exit, other.exit) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Float.floatToIntBits(enter) + Float.floatToIntBits(exit);
+        }
+    }
+
+    /**
+     * Consecutive reps of one class.
+     */
+    public static class RepSet {
+        private final String className;
+        private final int reps;
+
+        public RepSet(String className, int reps) {
+            this.className = className;
+            this.reps = reps;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public int getReps() {
+            return reps;
+        }
+    }
+
+    /**
+     * Immutable rep counts of an engine at one point in time, safe to hand to other threads.
+     */
+    public static class Snapshot {
+        private final String activeClass;
+        private final Map<String, Integer> repsByClass;
+        private final List<RepSet> sets;
+
+        private Snapshot(String activeClass, Map<String, Integer> repsByClass, List<RepSet> sets) {
+            this.activeClass = activeClass;
+            this.repsByClass = Collections.unmodifiableMap(repsByClass);
+            this.sets = Collections.unmodifiableList(sets);
+        }
+
+        /** Class of the latest rep, or null if no rep was counted yet. */
+        public String getActiveClass() {
+            return activeClass;
+        }
+
+        /** Total reps of the active class, 0 if no rep was counted yet. */
+        public int getActiveReps() {
+            return activeClass == null ? 0 : repsByClass.get(activeClass);
+        }
+
+        /** Total reps of every counted class, in the order the classes were configured. */
+        public Map<String, Integer> getRepsByClass() {
+            return repsByClass;
+        }
+
+        /** Sets in the order they were performed, the last one being the current set. */
+        public List<RepSet> getSets() {
+            return sets;
+        }
+    }
+
+    private final List<RepetitionCounter> repCounters = new ArrayList<>();
+    private final List<RepSet> completedSets = new ArrayList<>();
+    private String currentSetClass;
+    private int currentSetReps;
+    private String activeClass;
+    // Rebuilt only when counts change, so frames without a new rep don't allocate.
+    private Snapshot snapshot;
+
+    /**
+     * @param thresholdsByClass the classes to count reps of, with their thresholds.
+     */
+    public RepetitionEngine(Map<String, Thresholds> thresholdsByClass) {
+        for (Map.Entry<String, Thresholds> entry : thresholdsByClass.entrySet()) {
+            repCounters.add(new RepetitionCounter(
+                    entry.getKey(), entry.getValue().getEnter(), entry.getValue().getExit()));
+        }
+    }
+
+    /**
+     * Feeds a classification result to the counter of every class.
+     *
+     * @return whether a rep was completed.
+     */
+    public boolean addClassificationResult(ClassificationResult classificationResult) {
+        boolean counted = false;
+        for (RepetitionCounter repCounter : repCounters) {
+            int repsBefore = repCounter.getNumRepeats();
+            int repsAfter = repCounter.addClassificationResult(classificationResult);
+            if (repsAfter > repsBefore) {
+                onRep(repCounter.getClassName(), repsAfter - repsBefore);
+                counted = true;
+            }
+        }
+        return counted;
+    }
+
+    private void onRep(String className, int reps) {
+        if (!className.equals(currentSetClass)) {
+            startNewSet();
+            currentSetClass = className;
+        }
+        currentSetReps += reps;
+        activeClass = className;
+        snapshot = null;
+    }
+
+    /** Closes the current set, the next rep starts a new one even if it is of the same class. */
+    public void startNewSet() {
+        if (currentSetClass != null && currentSetReps > 0) {
+            completedSets.add(new RepSet(currentSetClass, currentSetReps));
+            snapshot = null;
+        }
+        currentSetClass = null;
+        currentSetReps = 0;
+    }
+
+    public void reset() {
+        for (RepetitionCounter repCounter : repCounters) {
+            repCounter.reset();
+        }
+        completedSets.clear();
+        currentSetClass = null;
+        currentSetReps = 0;
+        activeClass = null;
+        snapshot = null;
+    }
+
+    public Snapshot getSnapshot() {
+        if (snapshot == null) {
+            Map<String, Integer> repsByClass = new LinkedHashMap<>();
+            for (RepetitionCounter repCounter : repCounters) {
+                repsByClass.put(repCounter.getClassName(), repCounter.getNumRepeats());
+            }
+            List<RepSet> sets = new ArrayList<>(completedSets);
+            if (currentSetClass != null) {
+                sets.add(new RepSet(currentSetClass, currentSetReps));
+            }
+            snapshot = new Snapshot(activeClass, repsByClass, sets);
+        }
+        return snapshot;
+    }
+}
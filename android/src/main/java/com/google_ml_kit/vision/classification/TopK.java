@@ -0,0 +1,134 @@
+package com.google_ml_kit.vision.classification;
+
+import java.util.Arrays;
+
+/**
+ * Bounded max-heap keeping the K entries with the smallest distances, backed by primitive arrays.
+ *
+ * <p>Entries are ordered by distance and then by sample index, so the retained set does not depend
+ * on the order entries were offered in. This is what lets the different scan strategies of
+ * {@link PoseClassifier} return identical results.
+ */
+final class TopK {
+  private final int capacity;
+  private final int[] indices;
+  private final float[] distances;
+  private int size;
+
+  TopK(int capacity) {
+    this.capacity = capacity;
+    this.indices = new int[capacity];
+    this.distances = new float[capacity];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Distance an entry has to beat to be retained, or {@link Float#POSITIVE_INFINITY} while the
+   * heap is not full.
+   */
+  float threshold() {
+    return isFull() ? distances[0] : Float.POSITIVE_INFINITY;
+  }
+
+  int index(int i) {
+    return indices[i];
+  }
+
+  float distance(int i) {
+    return distances[i];
+  }
+
+  /** Offers an entry, returns whether it was retained. */
+  boolean offer(int index, float distance) {
+    if (capacity == 0) {
+      return false;
+    }
+    if (size < capacity) {
+      indices[size] = index;
+      distances[size] = distance;
+      siftUp(size++);
+      return true;
+    }
+    if (!less(index, distance, indices[0], distances[0])) {
+      return false;
+    }
+    indices[0] = index;
+    distances[0] = distance;
+    siftDown(0);
+    return true;
+  }
+
+  /** Offers every entry of another heap, e.g. when merging per-shard results. */
+  void offerAll(TopK other) {
+    for (int i = 0; i < other.size; i++) {
+      offer(other.indices[i], other.distances[i]);
+    }
+  }
+
+  /** Returns the retained sample indices, closest first. */
+  int[] sortedIndices() {
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> less(indices[a], distances[a], indices[b], distances[b]) ? -1
+        : less(indices[b], distances[b], indices[a], distances[a]) ? 1 : 0);
+    int[] sorted = new int[size];
+    for (int i = 0; i < size; i++) {
+      sorted[i] = indices[order[i]];
+    }
+    return sorted;
+  }
+
+  private static boolean less(int indexA, float distanceA, int indexB, float distanceB) {
+    int compare = Float.compare(distanceA, distanceB);
+    return compare < 0 || (compare == 0 && indexA < indexB);
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (!less(indices[parent], distances[parent], indices[i], distances[i])) {
+        return;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i) {
+    while (true) {
+      int largest = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < size && less(indices[largest], distances[largest], indices[left], distances[left])) {
+        largest = left;
+      }
+      if (right < size
+          && less(indices[largest], distances[largest], indices[right], distances[right])) {
+        largest = right;
+      }
+      if (largest == i) {
+        return;
+      }
+      swap(i, largest);
+      i = largest;
+    }
+  }
+
+  private void swap(int a, int b) {
+    int index = indices[a];
+    indices[a] = indices[b];
+    indices[b] = index;
+    float distance = distances[a];
+    distances[a] = distances[b];
+    distances[b] = distance;
+  }
+}
@@ -0,0 +1,172 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vantage-point tree over {@link PoseSample} embeddings for the weighted max (L-infinity) distance
+ * used by {@link PoseClassifier}.
+ *
+ * <p>Each node picks a vantage sample and splits the remaining samples of its subtree at the median
+ * distance to it. By the triangle inequality a query at distance d from the vantage sample is at
+ * least {@code max(d - maxRadius, minRadius - d)} away from every sample of a child, so children
+ * that can't hold a closer sample than the current K-th nearest are skipped.
+ *
+ * <p>The search scores samples exactly like the linear scan and only prunes subtrees that provably
+ * hold no candidate, so it returns the same top-K.
+ */
+final class VantagePointTree {
+  // Below this many samples a subtree is scanned linearly.
+  private static final int LEAF_SIZE = 16;
+  // Bounds are computed in float arithmetic, so a subtree is only pruned when its bound exceeds
+  // the threshold by more than the accumulated rounding error.
+  private static final float PRUNE_SLACK = 1e-4f;
+
+  private final float[][] embeddings;
+  private final PointF3D axesWeights;
+  // Offsets of the embedding vectors in the order leaf samples are scored in, see
+  // {@link PoseClassifier#boundedMaxDistance}.
+  private final int[] vectorOrder;
+  // Index of the first indexed sample in the classifier's sample list.
+  private final int offset;
+  // Sample indices relative to offset, arranged so that every subtree covers a contiguous range.
+  private final int[] order;
+  private final Node root;
+
+  private static final class Node {
+    // Range of order covered by this subtree, the vantage sample comes first.
+    final int from;
+    final int to;
+    // Children hold order[from + 1, split) and order[split, to), with the min and max distance of
+    // their samples to the vantage sample. Null for leaves.
+    Node inner;
+    Node outer;
+    int split;
+    float innerMin;
+    float innerMax;
+    float outerMin;
+    float outerMax;
+
+    Node(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  /** Indexes the samples in {@code [from, to)}, search results refer to their list index. */
+  VantagePointTree(List<PoseSample> poseSamples, int from, int to, PointF3D axesWeights,
+      int[] vectorOrder) {
+    this.embeddings = new float[to - from][];
+    for (int i = 0; i < embeddings.length; i++) {
+      embeddings[i] = poseSamples.get(from + i).getEmbedding();
+    }
+    this.axesWeights = axesWeights;
+    this.vectorOrder = vectorOrder;
+    this.offset = from;
+    this.order = new int[embeddings.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    this.root = order.length == 0 ? null : build(0, order.length, new float[order.length]);
+  }
+
+  private Node build(int from, int to, float[] scratch) {
+    Node node = new Node(from, to);
+    if (to - from <= LEAF_SIZE) {
+      return node;
+    }
+    // The middle sample of the range is as good a vantage point as a random one and keeps the
+    // tree deterministic.
+    swap(from, from + (to - from) / 2);
+    float[] vantage = embeddings[order[from]];
+    for (int i = from + 1; i < to; i++) {
+      scratch[order[i]] = PoseClassifier.maxDistance(vantage, embeddings[order[i]], axesWeights);
+    }
+    sortByDistance(from + 1, to, scratch);
+
+    node.split = (from + 1 + to) / 2;
+    node.innerMin = scratch[order[from + 1]];
+    node.innerMax = scratch[order[node.split - 1]];
+    node.outerMin = scratch[order[node.split]];
+    node.outerMax = scratch[order[to - 1]];
+    node.inner = build(from + 1, node.split, scratch);
+    node.outer = build(node.split, to, scratch);
+    return node;
+  }
+
+  private void sortByDistance(int from, int to, float[] distances) {
+    Integer[] range = new Integer[to - from];
+    for (int i = 0; i < range.length; i++) {
+      range[i] = order[from + i];
+    }
+    Arrays.sort(range, (a, b) -> Float.compare(distances[a], distances[b]));
+    for (int i = 0; i < range.length; i++) {
+      order[from + i] = range[i];
+    }
+  }
+
+  private void swap(int a, int b) {
+    int tmp = order[a];
+    order[a] = order[b];
+    order[b] = tmp;
+  }
+
+  /**
+   * Offers to {@code topK} every sample that may rank among its entries, scored by the min of the
+   * max distances to {@code embedding} and {@code flippedEmbedding}.
+   */
+  void search(float[] embedding, float[] flippedEmbedding, TopK topK) {
+    if (root != null) {
+      search(root, embedding, flippedEmbedding, topK);
+    }
+  }
+
+  private void search(Node node, float[] embedding, float[] flippedEmbedding, TopK topK) {
+    if (node.inner == null) {
+      for (int i = node.from; i < node.to; i++) {
+        offer(order[i], embedding, flippedEmbedding, topK);
+      }
+      return;
+    }
+
+    float[] vantage = embeddings[order[node.from]];
+    float originalMax = PoseClassifier.maxDistance(embedding, vantage, axesWeights);
+    float flippedMax = PoseClassifier.maxDistance(flippedEmbedding, vantage, axesWeights);
+    topK.offer(offset + order[node.from], Math.min(originalMax, flippedMax));
+
+    float innerBound = Math.min(
+        lowerBound(originalMax, node.innerMin, node.innerMax),
+        lowerBound(flippedMax, node.innerMin, node.innerMax));
+    float outerBound = Math.min(
+        lowerBound(originalMax, node.outerMin, node.outerMax),
+        lowerBound(flippedMax, node.outerMin, node.outerMax));
+    // Visit the more promising child first so the threshold tightens early.
+    if (innerBound <= outerBound) {
+      visit(node.inner, innerBound, embedding, flippedEmbedding, topK);
+      visit(node.outer, outerBound, embedding, flippedEmbedding, topK);
+    } else {
+      visit(node.outer, outerBound, embedding, flippedEmbedding, topK);
+      visit(node.inner, innerBound, embedding, flippedEmbedding, topK);
+    }
+  }
+
+  private void visit(Node child, float bound, float[] embedding, float[] flippedEmbedding,
+      TopK topK) {
+    float threshold = topK.threshold();
+    if (bound - PRUNE_SLACK * (1 + threshold) > threshold) {
+      return;
+    }
+    search(child, embedding, flippedEmbedding, topK);
+  }
+
+  private void offer(int index, float[] embedding, float[] flippedEmbedding, TopK topK) {
+    topK.offer(offset + index, PoseClassifier.boundedMaxDistance(embedding, flippedEmbedding,
+        embeddings[index], axesWeights, vectorOrder, topK.threshold()));
+  }
+
+  private static float lowerBound(float distance, float minRadius, float maxRadius) {
+    return Math.max(0, Math.max(distance - maxRadius, minRadius - distance));
+  }
+}
@@ -0,0 +1,186 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+// Frames go through the skipper the way PoseDetector sends them: a frame that isn't reused is
+// detected, and its result is passed to update.
+public class AdaptiveFrameSkipperTest {
+    private static final String DETECT = "vision#startPoseDetectorWithoutCl";
+    private static final String CLASSIFY = "vision#startPoseDetectorWithCl";
+    private static final int SETTLE_FRAMES = 3;
+    private static final int MAX_REUSED_FRAMES = 2;
+
+    @Test
+    public void reusesOnlyAfterSettleFramesStillFrames() {
+        AdaptiveFrameSkipper skipper = skipper();
+        PoseLandmarks still = pose(new Random(1));
+        // The first detected frame has nothing to compare with, the next ones are still.
+        for (int frame = 0; frame <= SETTLE_FRAMES; frame++) {
+            assertNull("frame " + frame, skipper.reuse(DETECT));
+            skipper.update(DETECT, new PoseWithClassification(still, null));
+        }
+        assertNotNull(skipper.reuse(DETECT));
+    }
+
+    @Test
+    public void detectsAFrameAfterMaxReusedFrames() {
+        AdaptiveFrameSkipper skipper = skipper();
+        PoseLandmarks still = pose(new Random(2));
+        PoseWithClassification last = settle(skipper, DETECT, still);
+
+        StringBuilder pattern = new StringBuilder();
+        for (int frame = 0; frame < 9; frame++) {
+            PoseWithClassification reused = skipper.reuse(DETECT);
+            if (reused == null) {
+                pattern.append('d');
+                last = new PoseWithClassification(still, null);
+                skipper.update(DETECT, last);
+            } else {
+                pattern.append('r');
+                // Always the latest detected result.
+                assertSame(last, reused);
+            }
+        }
+        assertEquals("rrdrrdrrd", pattern.toString());
+    }
+
+    @Test
+    public void stopsReusingOnMotion() {
+        AdaptiveFrameSkipper skipper = skipper();
+        Random random = new Random(3);
+        PoseLandmarks still = pose(random);
+        settle(skipper, DETECT, still);
+        skipper.reuse(DETECT);
+        skipper.reuse(DETECT);
+        assertNull(skipper.reuse(DETECT));
+
+        // Every landmark moves by 5% of the pose's size.
+        PoseLandmarks moved = shift(still, 0.05f * size(still));
+        skipper.update(DETECT, new PoseWithClassification(moved, null));
+        for (int frame = 0; frame < SETTLE_FRAMES; frame++) {
+            assertNull("frame " + frame, skipper.reuse(DETECT));
+            skipper.update(DETECT, new PoseWithClassification(moved, null));
+        }
+        assertNotNull(skipper.reuse(DETECT));
+    }
+
+    @Test
+    public void toleratesMotionBelowTheThreshold() {
+        AdaptiveFrameSkipper skipper = skipper();
+        PoseLandmarks still = pose(new Random(4));
+        PoseLandmarks jittered = shift(still, 0.01f * size(still));
+        for (int frame = 0; frame <= SETTLE_FRAMES; frame++) {
+            assertNull(skipper.reuse(DETECT));
+            skipper.update(DETECT, new PoseWithClassification(frame % 2 == 0 ? still : jittered, null));
+        }
+        assertNotNull(skipper.reuse(DETECT));
+    }
+
+    @Test
+    public void reusesResultsOnlyForTheMethodThatDetectedThem() {
+        AdaptiveFrameSkipper skipper = skipper();
+        PoseLandmarks still = pose(new Random(5));
+        settle(skipper, DETECT, still);
+
+        // A classifying frame never gets a result without classification.
+        assertNull(skipper.reuse(CLASSIFY));
+        // A late result of the previous method doesn't count towards settling either.
+        skipper.update(DETECT, new PoseWithClassification(still, null));
+        for (int frame = 0; frame <= SETTLE_FRAMES; frame++) {
+            assertNull("frame " + frame, skipper.reuse(CLASSIFY));
+            skipper.update(CLASSIFY, new PoseWithClassification(still, null));
+        }
+        assertNotNull(skipper.reuse(CLASSIFY));
+        assertNull(skipper.reuse(DETECT));
+    }
+
+    @Test
+    public void restartsWhenThePoseIsLost() {
+        AdaptiveFrameSkipper skipper = skipper();
+        PoseLandmarks still = pose(new Random(6));
+        settle(skipper, DETECT, still);
+        skipper.update(DETECT, new PoseWithClassification(null, null));
+        assertNull(skipper.reuse(DETECT));
+        settle(skipper, DETECT, still);
+    }
+
+    @Test
+    public void neverReusesWhenDisabled() {
+        AdaptiveFrameSkipper skipper = skipper();
+        PoseLandmarks still = pose(new Random(7));
+        settle(skipper, DETECT, still);
+        skipper.setConfig(null);
+        for (int frame = 0; frame < 10; frame++) {
+            assertNull(skipper.reuse(DETECT));
+            skipper.update(DETECT, new PoseWithClassification(still, null));
+        }
+    }
+
+    @Test
+    public void treatsPosesWithTooFewReliableLandmarksAsMoving() {
+        PoseLandmarks still = pose(new Random(8));
+        assertEquals(0, AdaptiveFrameSkipper.motion(still, still), 0);
+        float[] values = still.getValues().clone();
+        for (int type = 0; type < PoseLandmarks.NUM_LANDMARKS - 7; type++) {
+            values[type * PoseLandmarks.STRIDE + 3] = 0.4f;
+        }
+        PoseLandmarks hidden = new PoseLandmarks(values);
+        assertEquals(Float.POSITIVE_INFINITY, AdaptiveFrameSkipper.motion(still, hidden), 0);
+    }
+
+    private static AdaptiveFrameSkipper skipper() {
+        AdaptiveFrameSkipper skipper = new AdaptiveFrameSkipper();
+        skipper.setConfig(new AdaptiveFrameSkipper.Config(
+                AdaptiveFrameSkipper.Config.DEFAULT_MOTION_THRESHOLD, SETTLE_FRAMES, MAX_REUSED_FRAMES));
+        return skipper;
+    }
+
+    // Detects still frames until the next one is reused, returning the last detected result.
+    private static PoseWithClassification settle(AdaptiveFrameSkipper skipper, String method,
+                                                 PoseLandmarks still) {
+        PoseWithClassification result = null;
+        for (int frame = 0; frame <= SETTLE_FRAMES; frame++) {
+            assertNull(skipper.reuse(method));
+            result = new PoseWithClassification(still, null);
+            skipper.update(method, result);
+        }
+        return result;
+    }
+
+    private static PoseLandmarks pose(Random random) {
+        float[] values = new float[PoseLandmarks.NUM_LANDMARKS * PoseLandmarks.STRIDE];
+        for (int i = 0; i < values.length; i += PoseLandmarks.STRIDE) {
+            values[i] = 100 + random.nextFloat() * 200;
+            values[i + 1] = 100 + random.nextFloat() * 400;
+            values[i + 3] = 0.9f;
+        }
+        return new PoseLandmarks(values);
+    }
+
+    private static PoseLandmarks shift(PoseLandmarks landmarks, float dx) {
+        float[] values = landmarks.getValues().clone();
+        for (int i = 0; i < values.length; i += PoseLandmarks.STRIDE) {
+            values[i] += dx;
+        }
+        return new PoseLandmarks(values);
+    }
+
+    private static float size(PoseLandmarks landmarks) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int type = 0; type < PoseLandmarks.NUM_LANDMARKS; type++) {
+            minX = Math.min(minX, landmarks.getX(type));
+            maxX = Math.max(maxX, landmarks.getX(type));
+            minY = Math.min(minY, landmarks.getY(type));
+            maxY = Math.max(maxY, landmarks.getY(type));
+        }
+        return Math.max(maxX - minX, maxY - minY);
+    }
+}
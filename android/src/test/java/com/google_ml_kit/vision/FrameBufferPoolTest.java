@@ -0,0 +1,148 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameBufferPoolTest {
+    // Class sizes: powers of two are the first class of their doubling.
+    private static final int SMALL = 8192;
+    private static final int MEDIUM = 16384;
+    private static final int LARGE = 32768;
+
+    @Test
+    public void roundsSizesUpByAtMostAnEighth() {
+        assertEquals(4096, FrameBufferPool.classSize(1));
+        assertEquals(4096, FrameBufferPool.classSize(4096));
+        assertEquals(4608, FrameBufferPool.classSize(4097));
+        assertEquals(SMALL, FrameBufferPool.classSize(SMALL));
+        assertEquals(SMALL + 1024, FrameBufferPool.classSize(SMALL + 1));
+        // A 640x480 NV21 frame.
+        assertEquals(491520, FrameBufferPool.classSize(460800));
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            int size = 4097 + random.nextInt(16 * 1024 * 1024);
+            int classSize = FrameBufferPool.classSize(size);
+            assertTrue("size " + size, classSize >= size);
+            assertTrue("size " + size, classSize - size <= size / 8);
+            assertEquals("size " + size, classSize, FrameBufferPool.classSize(classSize));
+            assertTrue("size " + size, FrameBufferPool.classSize(size + 1) >= classSize);
+        }
+    }
+
+    @Test
+    public void handsOutBuffersLimitedToTheRequestedSize() {
+        FrameBufferPool pool = new FrameBufferPool();
+        ByteBuffer buffer = pool.acquire(SMALL + 100);
+        assertEquals(0, buffer.position());
+        assertEquals(SMALL + 100, buffer.limit());
+        assertEquals(FrameBufferPool.classSize(SMALL + 100), buffer.capacity());
+        assertEquals(0, buffer.arrayOffset());
+
+        // A released buffer comes back cleared, for any size of its class.
+        buffer.position(50);
+        pool.release(buffer);
+        ByteBuffer again = pool.acquire(SMALL + 900);
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(SMALL + 900, again.limit());
+    }
+
+    @Test
+    public void keepsAtMostMaxBuffersPerClass() {
+        FrameBufferPool pool = new FrameBufferPool(4, Long.MAX_VALUE);
+        List<ByteBuffer> buffers = acquire(pool, SMALL, 6);
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        assertEquals(4L * SMALL, stats(pool).get("retainedBytes"));
+
+        pool.resetCounters();
+        acquire(pool, SMALL, 6);
+        assertStats(pool, 4, 2, 0);
+    }
+
+    @Test
+    public void keepsAtMostMaxRetainedBytes() {
+        FrameBufferPool pool = new FrameBufferPool(4, 3L * MEDIUM);
+        for (ByteBuffer buffer : acquire(pool, MEDIUM, 4)) {
+            pool.release(buffer);
+            assertTrue((long) stats(pool).get("retainedBytes") <= 3L * MEDIUM);
+        }
+        assertEquals(3L * MEDIUM, stats(pool).get("retainedBytes"));
+
+        // A buffer larger than the whole budget is never kept, nor does it evict anything.
+        pool.release(ByteBuffer.allocate(4 * MEDIUM));
+        assertEquals(3L * MEDIUM, stats(pool).get("retainedBytes"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedClassFirst() {
+        // Room for the small and large buffers, not for the medium one besides.
+        FrameBufferPool pool = new FrameBufferPool(4, SMALL + LARGE + MEDIUM / 2);
+        ByteBuffer small = pool.acquire(SMALL);
+        ByteBuffer medium = pool.acquire(MEDIUM);
+        pool.release(small);
+        pool.release(medium);
+        // Using the small class again leaves the medium one least recently used.
+        pool.release(pool.acquire(SMALL));
+
+        // Retaining a large buffer makes room by letting go of the medium one only.
+        pool.release(ByteBuffer.allocate(LARGE));
+        assertEquals((long) SMALL + LARGE, stats(pool).get("retainedBytes"));
+
+        pool.resetCounters();
+        assertSame(small, pool.acquire(SMALL));
+        assertNotSame(medium, pool.acquire(MEDIUM));
+        assertEquals(LARGE, pool.acquire(LARGE).capacity());
+        assertStats(pool, 2, 1, 0);
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        FrameBufferPool pool = new FrameBufferPool();
+        assertStats(pool, 0, 0, 0);
+        ByteBuffer first = pool.acquire(SMALL);
+        ByteBuffer second = pool.acquire(SMALL);
+        pool.release(first);
+        assertStats(pool, 0, 2, SMALL);
+        pool.acquire(SMALL);
+        pool.acquire(MEDIUM);
+        assertStats(pool, 1, 3, 0);
+
+        // Resetting the counters leaves the retained buffers alone.
+        pool.release(second);
+        pool.resetCounters();
+        assertStats(pool, 0, 0, SMALL);
+    }
+
+    private static List<ByteBuffer> acquire(FrameBufferPool pool, int size, int count) {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            buffers.add(pool.acquire(size));
+        }
+        return buffers;
+    }
+
+    // The pool's part of the "bufferPool" metrics.
+    private static Map<String, Object> stats(FrameBufferPool pool) {
+        return pool.toMap();
+    }
+
+    private static void assertStats(FrameBufferPool pool, long hits, long misses, long retainedBytes) {
+        Map<String, Object> stats = stats(pool);
+        assertEquals(hits, stats.get("hits"));
+        assertEquals(misses, stats.get("misses"));
+        assertEquals(retainedBytes, stats.get("retainedBytes"));
+    }
+}
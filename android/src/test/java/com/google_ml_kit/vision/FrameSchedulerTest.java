@@ -0,0 +1,204 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+// The latest frame wins: frames beyond the in-flight bound wait in a single pending slot, and each
+// newer frame replaces and drops the one waiting there.
+public class FrameSchedulerTest {
+
+    // Records how it was handled and holds on to onDone until completed by the test.
+    private static class FakeFrame implements FrameScheduler.Frame {
+        final int id;
+        int runs;
+        int drops;
+        Runnable onDone;
+
+        FakeFrame(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void run(Runnable onDone) {
+            runs++;
+            this.onDone = onDone;
+        }
+
+        @Override
+        public void drop() {
+            drops++;
+        }
+
+        void complete() {
+            Runnable done = onDone;
+            onDone = null;
+            done.run();
+        }
+    }
+
+    @Test
+    public void keepsAtMostMaxInFlightFramesRunning() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMaxInFlight(3);
+        List<FakeFrame> frames = submit(scheduler, 10);
+
+        assertEquals(3, scheduler.getInFlight());
+        assertEquals(3, countRunning(frames));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, frames.get(i).runs);
+        }
+        for (int i = 3; i < 10; i++) {
+            assertEquals(0, frames.get(i).runs);
+        }
+    }
+
+    @Test
+    public void onlyTheNewestPendingFrameRuns() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMaxInFlight(2);
+        List<FakeFrame> frames = submit(scheduler, 10);
+
+        // Frames 2 to 8 were each superseded while waiting, frame 9 waits.
+        for (int i = 2; i < 9; i++) {
+            assertEquals(1, frames.get(i).drops);
+        }
+        assertEquals(0, frames.get(9).drops);
+        assertEquals(7, scheduler.getDroppedFrames());
+
+        // A finished frame hands its slot straight to the pending one.
+        frames.get(0).complete();
+        assertEquals(1, frames.get(9).runs);
+        assertEquals(2, scheduler.getInFlight());
+
+        // Nothing is pending any more, so slots are freed.
+        frames.get(1).complete();
+        frames.get(9).complete();
+        assertEquals(0, scheduler.getInFlight());
+        for (int i = 2; i < 9; i++) {
+            assertEquals(0, frames.get(i).runs);
+            assertEquals(1, frames.get(i).drops);
+        }
+        assertEquals(7, scheduler.getDroppedFrames());
+    }
+
+    @Test
+    public void countsEveryDropExactlyOnce() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMaxInFlight(1);
+        List<FakeFrame> frames = new ArrayList<>();
+        // Bursts of frames between completions.
+        for (int burst = 1; burst <= 5; burst++) {
+            for (int i = 0; i < burst; i++) {
+                FakeFrame frame = new FakeFrame(frames.size());
+                frames.add(frame);
+                scheduler.submit(frame);
+            }
+            running(frames).complete();
+        }
+        while (running(frames) != null) {
+            running(frames).complete();
+        }
+
+        int drops = 0;
+        for (FakeFrame frame : frames) {
+            assertEquals("frame " + frame.id, 1, frame.runs + frame.drops);
+            drops += frame.drops;
+        }
+        // From burst 3 on a frame is still running, so each burst loses all but its last frame.
+        assertEquals(2 + 3 + 4, drops);
+        assertEquals(drops, scheduler.getDroppedFrames());
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void frameDoneWhileStartingFreesItsSlot() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMaxInFlight(1);
+        // E.g. a frame whose image can't be prepared is answered right away.
+        scheduler.submit(new FrameScheduler.Frame() {
+            @Override
+            public void run(Runnable onDone) {
+                onDone.run();
+            }
+
+            @Override
+            public void drop() {
+                fail("Dropped a running frame");
+            }
+        });
+        assertEquals(0, scheduler.getInFlight());
+
+        FakeFrame next = new FakeFrame(1);
+        scheduler.submit(next);
+        assertEquals(1, next.runs);
+    }
+
+    @Test
+    public void failingFrameFreesItsSlot() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMaxInFlight(1);
+        try {
+            scheduler.submit(new FrameScheduler.Frame() {
+                @Override
+                public void run(Runnable onDone) {
+                    throw new IllegalStateException("detector closed");
+                }
+
+                @Override
+                public void drop() {
+                }
+            });
+            fail("Failure was swallowed");
+        } catch (IllegalStateException expected) {
+            // Propagated to the caller.
+        }
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void resetDropsThePendingFrameAndTheCount() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMaxInFlight(1);
+        List<FakeFrame> frames = submit(scheduler, 4);
+        assertEquals(2, scheduler.getDroppedFrames());
+
+        scheduler.reset();
+        assertEquals(1, frames.get(3).drops);
+        assertEquals(0, scheduler.getDroppedFrames());
+
+        // The frame in flight completes as usual, with nothing left to start.
+        frames.get(0).complete();
+        assertEquals(0, frames.get(3).runs);
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    private static List<FakeFrame> submit(FrameScheduler scheduler, int count) {
+        List<FakeFrame> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FakeFrame frame = new FakeFrame(i);
+            frames.add(frame);
+            scheduler.submit(frame);
+        }
+        return frames;
+    }
+
+    private static int countRunning(List<FakeFrame> frames) {
+        int running = 0;
+        for (FakeFrame frame : frames) {
+            if (frame.onDone != null) running++;
+        }
+        return running;
+    }
+
+    private static FakeFrame running(List<FakeFrame> frames) {
+        for (FakeFrame frame : frames) {
+            if (frame.onDone != null) return frame;
+        }
+        return null;
+    }
+}
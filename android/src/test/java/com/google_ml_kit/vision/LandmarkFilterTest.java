@@ -0,0 +1,164 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Landmarks are streamed at 30 fps unless a test says otherwise.
+public class LandmarkFilterTest {
+    private static final long FRAME_NANOS = 33_333_333L;
+    private static final int NUM_VALUES = PoseLandmarks.NUM_LANDMARKS * PoseLandmarks.STRIDE;
+
+    @Test
+    public void passesTheFirstFrameThrough() {
+        LandmarkFilter filter = enabledFilter();
+        PoseLandmarks landmarks = pose(new Random(1), 1);
+        PoseLandmarks filtered = filter.filter(landmarks, 5 * FRAME_NANOS);
+        assertNotSame(landmarks, filtered);
+        assertArrayEquals(landmarks.getValues(), filtered.getValues(), 0);
+    }
+
+    @Test
+    public void keepsStillLandmarksInPlace() {
+        LandmarkFilter filter = enabledFilter();
+        PoseLandmarks landmarks = pose(new Random(2), 0.8f);
+        for (int frame = 0; frame < 30; frame++) {
+            PoseLandmarks filtered = filter.filter(landmarks, frame * FRAME_NANOS);
+            assertArrayEquals("frame " + frame, landmarks.getValues(), filtered.getValues(), 0);
+        }
+    }
+
+    @Test
+    public void smoothesJitterAroundAStillPose() {
+        LandmarkFilter filter = enabledFilter();
+        Random random = new Random(3);
+        float[] still = pose(random, 1).getValues();
+        double rawError = 0;
+        double filteredError = 0;
+        for (int frame = 0; frame < 60; frame++) {
+            float[] jittered = still.clone();
+            for (int i = 0; i < NUM_VALUES; i += PoseLandmarks.STRIDE) {
+                jittered[i] += (float) random.nextGaussian() * 3;
+                jittered[i + 1] += (float) random.nextGaussian() * 3;
+            }
+            float[] filtered = filter.filter(new PoseLandmarks(jittered), frame * FRAME_NANOS).getValues();
+            if (frame >= 10) {
+                for (int i = 0; i < NUM_VALUES; i += PoseLandmarks.STRIDE) {
+                    rawError += Math.abs(jittered[i] - still[i]);
+                    filteredError += Math.abs(filtered[i] - still[i]);
+                }
+            }
+        }
+        assertTrue(filteredError + " vs " + rawError, filteredError < rawError / 2);
+    }
+
+    @Test
+    public void dampsJumpsOfUnlikelyLandmarksMore() {
+        LandmarkFilter filter = enabledFilter();
+        float[] values = pose(new Random(4), 1).getValues();
+        // Landmark 1 is occluded, landmark 0 is not.
+        values[PoseLandmarks.STRIDE + 3] = 0.2f;
+        filter.filter(new PoseLandmarks(values), 0);
+
+        float[] jumped = values.clone();
+        jumped[0] += 100;
+        jumped[PoseLandmarks.STRIDE] += 100;
+        PoseLandmarks filtered = filter.filter(new PoseLandmarks(jumped), FRAME_NANOS);
+        float likelyMove = filtered.getX(0) - values[0];
+        float unlikelyMove = filtered.getX(1) - values[PoseLandmarks.STRIDE];
+        assertTrue(likelyMove > 0 && likelyMove < 100);
+        assertTrue(unlikelyMove > 0);
+        assertTrue(unlikelyMove + " vs " + likelyMove, unlikelyMove < likelyMove / 2);
+        // Likelihoods are passed through, not smoothed.
+        assertEquals(0.2f, filtered.getValues()[PoseLandmarks.STRIDE + 3], 0);
+    }
+
+    @Test
+    public void restartsAfterReset() {
+        LandmarkFilter filter = enabledFilter();
+        filter.filter(pose(new Random(5), 1), 0);
+        filter.reset();
+        PoseLandmarks next = pose(new Random(6), 1);
+        assertArrayEquals(next.getValues(), filter.filter(next, FRAME_NANOS).getValues(), 0);
+    }
+
+    @Test
+    public void restartsAfterAGapOrALostPose() {
+        LandmarkFilter filter = enabledFilter();
+        filter.filter(pose(new Random(7), 1), 0);
+        PoseLandmarks afterGap = pose(new Random(8), 1);
+        assertArrayEquals(afterGap.getValues(),
+                filter.filter(afterGap, 2_000_000_000L).getValues(), 0);
+
+        assertNull(filter.filter(null, 2_000_000_000L + FRAME_NANOS));
+        PoseLandmarks found = pose(new Random(9), 1);
+        assertArrayEquals(found.getValues(),
+                filter.filter(found, 2_000_000_000L + 2 * FRAME_NANOS).getValues(), 0);
+    }
+
+    @Test
+    public void smoothesFramesCompletingOutOfOrder() {
+        LandmarkFilter filter = enabledFilter();
+        float[] values = pose(new Random(10), 1).getValues();
+        filter.filter(new PoseLandmarks(values), 2 * FRAME_NANOS);
+        float[] moved = values.clone();
+        moved[0] += 10;
+        float x = filter.filter(new PoseLandmarks(moved), FRAME_NANOS).getX(0);
+        assertTrue(x > values[0] && x < moved[0]);
+    }
+
+    @Test
+    public void leavesLandmarksAloneWhenDisabled() {
+        LandmarkFilter filter = new LandmarkFilter();
+        PoseLandmarks landmarks = pose(new Random(11), 1);
+        assertSame(landmarks, filter.filter(landmarks, 0));
+
+        filter.setConfig(LandmarkFilter.Config.fromOption(new HashMap<String, Object>()));
+        filter.filter(landmarks, 0);
+        filter.setConfig(null);
+        PoseLandmarks next = pose(new Random(12), 1);
+        assertSame(next, filter.filter(next, FRAME_NANOS));
+
+        // Enabling it again starts from the next frame, not from before it was disabled.
+        filter.setConfig(LandmarkFilter.Config.fromOption(new HashMap<String, Object>()));
+        assertArrayEquals(next.getValues(), filter.filter(next, 2 * FRAME_NANOS).getValues(), 0);
+    }
+
+    @Test
+    public void readsTheOption() {
+        assertNull(LandmarkFilter.Config.fromOption(null));
+        Map<String, Object> option = new HashMap<>();
+        option.put("beta", 0.5);
+        LandmarkFilter.Config config = LandmarkFilter.Config.fromOption(option);
+        assertEquals(LandmarkFilter.Config.DEFAULT_MIN_CUTOFF, config.minCutoff, 0);
+        assertEquals(0.5f, config.beta, 0);
+        assertEquals(LandmarkFilter.Config.DEFAULT_DERIVATIVE_CUTOFF, config.derivativeCutoff, 0);
+    }
+
+    private static LandmarkFilter enabledFilter() {
+        LandmarkFilter filter = new LandmarkFilter();
+        filter.setConfig(new LandmarkFilter.Config(LandmarkFilter.Config.DEFAULT_MIN_CUTOFF,
+                LandmarkFilter.Config.DEFAULT_BETA, LandmarkFilter.Config.DEFAULT_DERIVATIVE_CUTOFF));
+        return filter;
+    }
+
+    private static PoseLandmarks pose(Random random, float likelihood) {
+        float[] values = new float[NUM_VALUES];
+        for (int i = 0; i < NUM_VALUES; i += PoseLandmarks.STRIDE) {
+            values[i] = random.nextFloat() * 480;
+            values[i + 1] = random.nextFloat() * 640;
+            values[i + 2] = random.nextFloat() * 200 - 100;
+            values[i + 3] = likelihood;
+        }
+        return new PoseLandmarks(values);
+    }
+}
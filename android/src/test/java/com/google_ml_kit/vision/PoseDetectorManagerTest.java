@@ -0,0 +1,109 @@
+package com.google_ml_kit.vision;
+
+import com.google.mlkit.vision.pose.PoseDetector;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PoseDetectorManagerTest {
+    private static final int FRAMES = 1000;
+
+    // Hands out fake clients and counts how often they are created and closed.
+    private static class FakeClientFactory implements PoseDetectorManager.ClientFactory {
+        final List<String> created = new ArrayList<>();
+        final Map<PoseDetector, Integer> closeCounts = new HashMap<>();
+
+        @Override
+        public PoseDetector create(String model, String mode) {
+            created.add(model + "/" + mode);
+            // A proxy implements the client interface whatever methods ml kit declares on it.
+            PoseDetector[] client = new PoseDetector[1];
+            client[0] = (PoseDetector) Proxy.newProxyInstance(
+                    PoseDetector.class.getClassLoader(),
+                    new Class<?>[] {PoseDetector.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                closeCounts.put(client[0], closeCounts.get(client[0]) + 1);
+                                return null;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "FakeClient(" + model + "/" + mode + ")";
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            closeCounts.put(client[0], 0);
+            return client[0];
+        }
+
+        int closeCount(PoseDetector client) {
+            return closeCounts.get(client);
+        }
+    }
+
+    @Test
+    public void reusesOneClientForEveryFrameOfAConfiguration() {
+        FakeClientFactory factory = new FakeClientFactory();
+        PoseDetectorManager manager = new PoseDetectorManager(factory);
+
+        PoseDetector first = manager.getClient("base", "stream");
+        for (int frame = 1; frame < FRAMES; frame++) {
+            assertSame(first, manager.getClient("base", "stream"));
+        }
+
+        assertEquals(1, factory.created.size());
+        assertEquals(0, factory.closeCount(first));
+        assertTrue(manager.isOpen());
+    }
+
+    @Test
+    public void closesTheClientWhenTheConfigurationChanges() {
+        FakeClientFactory factory = new FakeClientFactory();
+        PoseDetectorManager manager = new PoseDetectorManager(factory);
+
+        PoseDetector base = manager.getClient("base", "stream");
+        PoseDetector accurate = manager.getClient("accurate", "stream");
+        PoseDetector single = manager.getClient("accurate", "single");
+
+        assertNotSame(base, accurate);
+        assertNotSame(accurate, single);
+        assertEquals(3, factory.created.size());
+        assertEquals("accurate/single", factory.created.get(2));
+        assertEquals(1, factory.closeCount(base));
+        assertEquals(1, factory.closeCount(accurate));
+        assertEquals(0, factory.closeCount(single));
+    }
+
+    @Test
+    public void closeReleasesTheClientOnce() {
+        FakeClientFactory factory = new FakeClientFactory();
+        PoseDetectorManager manager = new PoseDetectorManager(factory);
+
+        PoseDetector client = manager.getClient("base", "stream");
+        manager.close();
+        manager.close();
+
+        assertEquals(1, factory.closeCount(client));
+        assertFalse(manager.isOpen());
+
+        // The next frame gets a new client.
+        PoseDetector reopened = manager.getClient("base", "stream");
+        assertNotSame(client, reopened);
+        assertEquals(2, factory.created.size());
+    }
+}
@@ -0,0 +1,143 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+// Round trips between the camera frame buffer and the images prepared from it: a point of the
+// buffer, found again in the cropped, shrunk and rotated image, must map back to where it is in
+// the upright frame.
+public class PreparedImageTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int[] FACTORS = {1, 2, 3, 4, 5};
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    // Crops as left, top, width, height in buffer coordinates.
+    private static final int[][] CROPS = {{0, 0, WIDTH, HEIGHT}, {6, 4, 40, 30}, {20, 10, 44, 38}};
+    private static final float TOLERANCE = 1e-3f;
+
+    @Test
+    public void mapsDownscaledUprightCropsBackToTheFrame() {
+        for (int[] crop : CROPS) {
+            for (int factor : FACTORS) {
+                for (int rotation : ROTATIONS) {
+                    int outWidth = YuvDownscaler.scaledSize(crop[2], factor);
+                    int outHeight = YuvDownscaler.scaledSize(crop[3], factor);
+                    // Set up like FramePreprocessor: the offset is that of the region the boxes cover.
+                    RoiTracker.Crop covered = new RoiTracker.Crop(crop[0], crop[1],
+                            outWidth * factor, outHeight * factor, WIDTH, HEIGHT, rotation);
+                    PreparedImage image = new PreparedImage(
+                            null, factor, covered.offsetX, covered.offsetY, null, null);
+
+                    int[][] boxes = {{0, 0}, {outWidth - 1, 0}, {0, outHeight - 1},
+                            {outWidth - 1, outHeight - 1}, {outWidth / 2, outHeight / 3}};
+                    for (int[] box : boxes) {
+                        String message = "crop " + crop[0] + "," + crop[1] + " " + crop[2] + "x" + crop[3]
+                                + ", factor " + factor + ", rotation " + rotation
+                                + ", box " + box[0] + "," + box[1];
+                        int left = crop[0] + box[0] * factor;
+                        int top = crop[1] + box[1] * factor;
+                        int[] found = findBox(left, top, crop, factor, rotation);
+
+                        // The center of the pixel the box shrank to is the center of the box.
+                        float[] expected = toUprightFrame(left + factor / 2f, top + factor / 2f, rotation);
+                        PoseLandmarks landmarks = image.toFrame(landmark(found[0] + 0.5f, found[1] + 0.5f, 1.5f));
+                        assertEquals(message, expected[0], landmarks.getX(0), TOLERANCE);
+                        assertEquals(message, expected[1], landmarks.getY(0), TOLERANCE);
+                        assertEquals(message, 1.5f * factor, landmarks.getZ(0), TOLERANCE);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mapsCropsRotatedByMlKitBackToTheFrame() {
+        for (int[] crop : CROPS) {
+            for (int rotation : ROTATIONS) {
+                RoiTracker.Crop roi = new RoiTracker.Crop(
+                        crop[0], crop[1], crop[2], crop[3], WIDTH, HEIGHT, rotation);
+                PreparedImage image = new PreparedImage(null, 1, roi.offsetX, roi.offsetY, null, null);
+
+                float[][] points = {{0, 0}, {crop[2], crop[3]}, {crop[2] / 3f, crop[3] - 2.5f}};
+                for (float[] point : points) {
+                    // ml kit reports landmarks in the crop turned upright on its own.
+                    float[] inCrop = rotate(point[0], point[1], crop[2], crop[3], rotation);
+                    float[] expected = toUprightFrame(crop[0] + point[0], crop[1] + point[1], rotation);
+                    PoseLandmarks landmarks = image.toFrame(landmark(inCrop[0], inCrop[1], 1.5f));
+                    String message = "crop " + crop[0] + "," + crop[1] + ", rotation " + rotation;
+                    assertEquals(message, expected[0], landmarks.getX(0), TOLERANCE);
+                    assertEquals(message, expected[1], landmarks.getY(0), TOLERANCE);
+                    assertEquals(message, 1.5f, landmarks.getZ(0), TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void leavesLandmarksOfUntransformedImagesAlone() {
+        PoseLandmarks landmarks = landmark(12, 34, 5);
+        assertSame(landmarks, PreparedImage.of(null).toFrame(landmarks));
+        assertNull(new PreparedImage(null, 2, 4, 6, null, null).toFrame(null));
+    }
+
+    // Shrinks and rotates a black frame holding one white box at left, top, and returns where the
+    // box ended up in the output.
+    private static int[] findBox(int left, int top, int[] crop, int factor, int rotation) {
+        byte[] nv21 = new byte[YuvPlaneConverter.nv21Size(WIDTH, HEIGHT)];
+        for (int y = top; y < top + factor; y++) {
+            for (int x = left; x < left + factor; x++) {
+                nv21[y * WIDTH + x] = (byte) 255;
+            }
+        }
+        int outWidth = YuvDownscaler.scaledSize(crop[2], factor);
+        int outHeight = YuvDownscaler.scaledSize(crop[3], factor);
+        byte[] out = new byte[YuvPlaneConverter.nv21Size(outWidth, outHeight)];
+        YuvDownscaler.downscaleToNv21(nv21, 0, WIDTH,
+                nv21, WIDTH * HEIGHT + 1, nv21, WIDTH * HEIGHT, WIDTH, 2,
+                crop[0], crop[1], crop[2], crop[3], factor, rotation, out);
+
+        int uprightWidth = rotation == 90 || rotation == 270 ? outHeight : outWidth;
+        int[] found = null;
+        for (int i = 0; i < outWidth * outHeight; i++) {
+            if (out[i] != 0) {
+                assertNull("Box spread over several pixels", found);
+                assertEquals(255, out[i] & 0xff);
+                found = new int[] {i % uprightWidth, i / uprightWidth};
+            }
+        }
+        assertNotNull("Box not found", found);
+        return found;
+    }
+
+    private static float[] toUprightFrame(float x, float y, int rotation) {
+        return rotate(x, y, WIDTH, HEIGHT, rotation);
+    }
+
+    // Turns a point of a width x height image clockwise by rotation, with pixel edges at whole
+    // coordinates.
+    private static float[] rotate(float x, float y, float width, float height, int rotation) {
+        switch (rotation) {
+            case 90:
+                return new float[] {height - y, x};
+            case 180:
+                return new float[] {width - x, height - y};
+            case 270:
+                return new float[] {y, width - x};
+            default:
+                return new float[] {x, y};
+        }
+    }
+
+    private static PoseLandmarks landmark(float x, float y, float z) {
+        float[] values = new float[PoseLandmarks.NUM_LANDMARKS * PoseLandmarks.STRIDE];
+        values[0] = x;
+        values[1] = y;
+        values[2] = z;
+        values[3] = 1;
+        return new PoseLandmarks(values);
+    }
+}
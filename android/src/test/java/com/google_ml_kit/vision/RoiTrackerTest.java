@@ -0,0 +1,199 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Poses are placed in the upright frame, the way ml kit reports them, and their crops are checked
+// in the rotated frame buffer they are cut from.
+public class RoiTrackerTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final float PADDING = 0.25f;
+
+    @Test
+    public void cropsThePaddedPoseForEveryRotation() {
+        for (int rotation : ROTATIONS) {
+            RoiTracker tracker = tracker();
+            tracker.cropFor(WIDTH, HEIGHT, rotation);
+            // Box of 120x160 at 150,100 in the upright frame, padded by 40 on every side.
+            float[] box = {150, 100, 270, 260};
+            tracker.update(pose(box, new Random(rotation)));
+            RoiTracker.Crop crop = tracker.cropFor(WIDTH, HEIGHT, rotation);
+            assertNotNull("rotation " + rotation, crop);
+            assertValid(crop, rotation);
+            assertCovers(crop, rotation, new float[] {110, 60, 310, 300}, 2);
+        }
+    }
+
+    @Test
+    public void clampsCropsToTheFrameEdges() {
+        for (int rotation : ROTATIONS) {
+            int uprightWidth = rotation % 180 == 0 ? WIDTH : HEIGHT;
+            int uprightHeight = rotation % 180 == 0 ? HEIGHT : WIDTH;
+            float[][] boxes = {
+                    // Against the top left corner, then the bottom right one.
+                    {10, 5, 130, 165},
+                    {uprightWidth - 130, uprightHeight - 165, uprightWidth - 10, uprightHeight - 5},
+            };
+            for (float[] box : boxes) {
+                RoiTracker tracker = tracker();
+                tracker.cropFor(WIDTH, HEIGHT, rotation);
+                tracker.update(pose(box, new Random(rotation)));
+                RoiTracker.Crop crop = tracker.cropFor(WIDTH, HEIGHT, rotation);
+                String message = "rotation " + rotation + ", box at " + box[0] + "," + box[1];
+                assertNotNull(message, crop);
+                assertValid(crop, rotation);
+                float pad = PADDING * 160;
+                assertCovers(crop, rotation, new float[] {
+                        Math.max(0, box[0] - pad), Math.max(0, box[1] - pad),
+                        Math.min(uprightWidth, box[2] + pad), Math.min(uprightHeight, box[3] + pad)}, 2);
+            }
+        }
+    }
+
+    @Test
+    public void keepsTheCropWhileThePoseStaysWellInside() {
+        RoiTracker tracker = tracker();
+        tracker.cropFor(WIDTH, HEIGHT, 90);
+        tracker.update(pose(new float[] {150, 100, 270, 260}, new Random(1)));
+        RoiTracker.Crop crop = tracker.cropFor(WIDTH, HEIGHT, 90);
+
+        // Moving by less than half the padding keeps the crop, so frames keep their size.
+        tracker.update(pose(new float[] {160, 110, 280, 270}, new Random(2)));
+        assertSame(crop, tracker.cropFor(WIDTH, HEIGHT, 90));
+
+        tracker.update(pose(new float[] {200, 100, 320, 260}, new Random(3)));
+        RoiTracker.Crop moved = tracker.cropFor(WIDTH, HEIGHT, 90);
+        assertNotSame(crop, moved);
+        assertCovers(moved, 90, new float[] {160, 60, 360, 300}, 2);
+    }
+
+    @Test
+    public void fallsBackToTheFullFrame() {
+        RoiTracker tracker = tracker();
+        // No pose yet.
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+
+        // Lost pose.
+        tracker.update(pose(new float[] {150, 100, 270, 260}, new Random(4)));
+        assertNotNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+        tracker.update(null);
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+
+        // Too few reliable landmarks.
+        PoseLandmarks hidden = pose(new float[] {150, 100, 270, 260}, new Random(5));
+        float[] values = hidden.getValues();
+        for (int type = 0; type < PoseLandmarks.NUM_LANDMARKS - 7; type++) {
+            values[type * PoseLandmarks.STRIDE + 3] = 0.4f;
+        }
+        tracker.update(hidden);
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+
+        // A pose filling most of the frame, and one too small to crop around.
+        tracker.update(pose(new float[] {60, 40, 580, 440}, new Random(6)));
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+        tracker.update(pose(new float[] {300, 200, 320, 230}, new Random(7)));
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+    }
+
+    @Test
+    public void restartsWhenTheFrameChanges() {
+        RoiTracker tracker = tracker();
+        tracker.cropFor(WIDTH, HEIGHT, 0);
+        tracker.update(pose(new float[] {150, 100, 270, 260}, new Random(8)));
+        assertNotNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+        // The pose's box means nothing in a rotated or resized frame.
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 90));
+        tracker.update(pose(new float[] {150, 100, 270, 260}, new Random(9)));
+        assertNotNull(tracker.cropFor(WIDTH, HEIGHT, 90));
+        assertNull(tracker.cropFor(HEIGHT, WIDTH, 90));
+    }
+
+    @Test
+    public void neverCropsWhenDisabled() {
+        RoiTracker tracker = tracker();
+        tracker.update(pose(new float[] {150, 100, 270, 260}, new Random(10)));
+        tracker.setConfig(null);
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+        tracker.update(pose(new float[] {150, 100, 270, 260}, new Random(11)));
+        assertNull(tracker.cropFor(WIDTH, HEIGHT, 0));
+    }
+
+    private static RoiTracker tracker() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.setConfig(new RoiTracker.Config(PADDING));
+        return tracker;
+    }
+
+    // Crops are even, inside the buffer, and their offset is where they are in the upright frame.
+    private static void assertValid(RoiTracker.Crop crop, int rotation) {
+        String message = "rotation " + rotation;
+        assertEquals(message, 0, crop.left % 2);
+        assertEquals(message, 0, crop.top % 2);
+        assertEquals(message, 0, crop.width % 2);
+        assertEquals(message, 0, crop.height % 2);
+        assertTrue(message, crop.left >= 0 && crop.top >= 0);
+        assertTrue(message, crop.left + crop.width <= WIDTH && crop.top + crop.height <= HEIGHT);
+
+        float[] upright = toUpright(crop, rotation);
+        assertEquals(message, upright[0], crop.offsetX, 0);
+        assertEquals(message, upright[1], crop.offsetY, 0);
+        assertEquals(message, upright[2] - upright[0], crop.uprightWidth, 0);
+        assertEquals(message, upright[3] - upright[1], crop.uprightHeight, 0);
+    }
+
+    // The crop covers the box in the upright frame, exceeding it by at most slack on each side.
+    private static void assertCovers(RoiTracker.Crop crop, int rotation, float[] box, float slack) {
+        float[] upright = toUpright(crop, rotation);
+        String message = "rotation " + rotation + ", crop " + upright[0] + "," + upright[1] + " to "
+                + upright[2] + "," + upright[3];
+        assertTrue(message, upright[0] <= box[0] && upright[0] >= box[0] - slack);
+        assertTrue(message, upright[1] <= box[1] && upright[1] >= box[1] - slack);
+        assertTrue(message, upright[2] >= box[2] && upright[2] <= box[2] + slack);
+        assertTrue(message, upright[3] >= box[3] && upright[3] <= box[3] + slack);
+    }
+
+    // The crop's corners turned clockwise by the rotation, as minX, minY, maxX, maxY.
+    private static float[] toUpright(RoiTracker.Crop crop, int rotation) {
+        float[] a = rotate(crop.left, crop.top, rotation);
+        float[] b = rotate(crop.left + crop.width, crop.top + crop.height, rotation);
+        return new float[] {Math.min(a[0], b[0]), Math.min(a[1], b[1]),
+                Math.max(a[0], b[0]), Math.max(a[1], b[1])};
+    }
+
+    private static float[] rotate(float x, float y, int rotation) {
+        switch (rotation) {
+            case 90:
+                return new float[] {HEIGHT - y, x};
+            case 180:
+                return new float[] {WIDTH - x, HEIGHT - y};
+            case 270:
+                return new float[] {y, WIDTH - x};
+            default:
+                return new float[] {x, y};
+        }
+    }
+
+    // Landmarks spanning the box exactly, the first two on its corners.
+    private static PoseLandmarks pose(float[] box, Random random) {
+        float[] values = new float[PoseLandmarks.NUM_LANDMARKS * PoseLandmarks.STRIDE];
+        for (int type = 0; type < PoseLandmarks.NUM_LANDMARKS; type++) {
+            int i = type * PoseLandmarks.STRIDE;
+            float fx = type == 0 ? 0 : type == 1 ? 1 : random.nextFloat();
+            float fy = type == 0 ? 0 : type == 1 ? 1 : random.nextFloat();
+            values[i] = box[0] + fx * (box[2] - box[0]);
+            values[i + 1] = box[1] + fy * (box[3] - box[1]);
+            values[i + 3] = 0.9f;
+        }
+        return new PoseLandmarks(values);
+    }
+}
@@ -0,0 +1,137 @@
+package com.google_ml_kit.vision;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// A YUV 4:2:0 frame of random samples for the frame conversion tests. It can be laid out as a
+// tightly packed NV21 array or as the separate planes of a YUV_420_888 camera image.
+final class TestFrame {
+    // Fills row padding and the gaps between chroma samples, so reading them shows in the output.
+    private static final byte PADDING = (byte) 0xee;
+
+    final int width;
+    final int height;
+    final int chromaWidth;
+    final int chromaHeight;
+    // Row by row without padding: width x height luma, chromaWidth x chromaHeight of each chroma.
+    final byte[] y;
+    final byte[] u;
+    final byte[] v;
+
+    private TestFrame(int width, int height, byte[] y, byte[] u, byte[] v) {
+        this.width = width;
+        this.height = height;
+        this.chromaWidth = (width + 1) / 2;
+        this.chromaHeight = (height + 1) / 2;
+        this.y = y;
+        this.u = u;
+        this.v = v;
+    }
+
+    static TestFrame random(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int chromaSize = ((width + 1) / 2) * ((height + 1) / 2);
+        byte[] y = new byte[width * height];
+        byte[] u = new byte[chromaSize];
+        byte[] v = new byte[chromaSize];
+        random.nextBytes(y);
+        random.nextBytes(u);
+        random.nextBytes(v);
+        return new TestFrame(width, height, y, u, v);
+    }
+
+    int luma(int x, int y) {
+        return this.y[y * width + x] & 0xff;
+    }
+
+    int chromaU(int x, int y) {
+        return u[y * chromaWidth + x] & 0xff;
+    }
+
+    int chromaV(int x, int y) {
+        return v[y * chromaWidth + x] & 0xff;
+    }
+
+    // The width x height region at left, top, which must be even.
+    TestFrame crop(int left, int top, int width, int height) {
+        TestFrame crop = new TestFrame(width, height, new byte[width * height],
+                new byte[((width + 1) / 2) * ((height + 1) / 2)],
+                new byte[((width + 1) / 2) * ((height + 1) / 2)]);
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(y, (top + row) * this.width + left, crop.y, row * width, width);
+        }
+        for (int row = 0; row < crop.chromaHeight; row++) {
+            int from = (top / 2 + row) * chromaWidth + left / 2;
+            System.arraycopy(u, from, crop.u, row * crop.chromaWidth, crop.chromaWidth);
+            System.arraycopy(v, from, crop.v, row * crop.chromaWidth, crop.chromaWidth);
+        }
+        return crop;
+    }
+
+    byte[] nv21() {
+        byte[] nv21 = new byte[YuvPlaneConverter.nv21Size(width, height)];
+        System.arraycopy(y, 0, nv21, 0, y.length);
+        for (int i = 0; i < u.length; i++) {
+            nv21[y.length + 2 * i] = v[i];
+            nv21[y.length + 2 * i + 1] = u[i];
+        }
+        return nv21;
+    }
+
+    // The planes the way Android hands them out: rows padded to their stride, except the last row
+    // which ends with its last sample. With a pixel stride of 2 the U and V planes are views one
+    // byte apart into a single interleaved VU buffer, so the U plane is one byte shorter than its
+    // last row would be.
+    Planes planes(int yRowStride, int uvRowStride, int uvPixelStride) {
+        byte[] yPlane = new byte[yRowStride * (height - 1) + width];
+        Arrays.fill(yPlane, PADDING);
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(y, row * width, yPlane, row * yRowStride, width);
+        }
+
+        int chromaLength = uvRowStride * (chromaHeight - 1) + (chromaWidth - 1) * uvPixelStride + 1;
+        if (uvPixelStride == 2) {
+            byte[] vu = new byte[chromaLength + 1];
+            Arrays.fill(vu, PADDING);
+            for (int row = 0; row < chromaHeight; row++) {
+                for (int col = 0; col < chromaWidth; col++) {
+                    int offset = row * uvRowStride + col * 2;
+                    vu[offset] = v[row * chromaWidth + col];
+                    vu[offset + 1] = u[row * chromaWidth + col];
+                }
+            }
+            return new Planes(yPlane, Arrays.copyOfRange(vu, 1, chromaLength + 1),
+                    Arrays.copyOf(vu, chromaLength), yRowStride, uvRowStride, uvPixelStride);
+        }
+        byte[] uPlane = new byte[chromaLength];
+        byte[] vPlane = new byte[chromaLength];
+        Arrays.fill(uPlane, PADDING);
+        Arrays.fill(vPlane, PADDING);
+        for (int row = 0; row < chromaHeight; row++) {
+            for (int col = 0; col < chromaWidth; col++) {
+                int offset = row * uvRowStride + col * uvPixelStride;
+                uPlane[offset] = u[row * chromaWidth + col];
+                vPlane[offset] = v[row * chromaWidth + col];
+            }
+        }
+        return new Planes(yPlane, uPlane, vPlane, yRowStride, uvRowStride, uvPixelStride);
+    }
+
+    static final class Planes {
+        final byte[] y;
+        final byte[] u;
+        final byte[] v;
+        final int yRowStride;
+        final int uvRowStride;
+        final int uvPixelStride;
+
+        Planes(byte[] y, byte[] u, byte[] v, int yRowStride, int uvRowStride, int uvPixelStride) {
+            this.y = y;
+            this.u = u;
+            this.v = v;
+            this.yRowStride = yRowStride;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+        }
+    }
+}
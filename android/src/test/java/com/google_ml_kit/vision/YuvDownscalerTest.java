@@ -0,0 +1,163 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class YuvDownscalerTest {
+    private static final int WIDTH = 70;
+    private static final int HEIGHT = 52;
+    private static final int[] FACTORS = {1, 2, 3, 4, 5};
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    // Regions as left, top, width, height: the whole frame and crops whose sides aren't multiples
+    // of most factors.
+    private static final int[][] REGIONS = {{0, 0, WIDTH, HEIGHT}, {6, 4, 42, 34}, {10, 8, 60, 31}};
+
+    @Test
+    public void matchesTheReferenceForNv21Frames() {
+        TestFrame frame = TestFrame.random(WIDTH, HEIGHT, 1);
+        byte[] nv21 = frame.nv21();
+        int chromaStart = WIDTH * HEIGHT;
+        for (int[] region : REGIONS) {
+            for (int factor : FACTORS) {
+                for (int rotation : ROTATIONS) {
+                    byte[] out = new byte[outputSize(region, factor)];
+                    // The planes inside the NV21 array, the way FramePreprocessor passes them.
+                    YuvDownscaler.downscaleToNv21(
+                            nv21, 0, WIDTH,
+                            nv21, chromaStart + 1, nv21, chromaStart, 2 * frame.chromaWidth, 2,
+                            region[0], region[1], region[2], region[3], factor, rotation, out);
+                    assertArrayEquals(describe(region, factor, rotation),
+                            reference(frame, region, factor, rotation), out);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesTheReferenceForPlanes() {
+        TestFrame frame = TestFrame.random(WIDTH, HEIGHT, 2);
+        TestFrame.Planes[] sources = {
+                frame.planes(WIDTH, frame.chromaWidth, 1),
+                frame.planes(WIDTH + 10, frame.chromaWidth + 7, 1),
+                frame.planes(WIDTH, 2 * frame.chromaWidth, 2),
+                frame.planes(WIDTH + 10, 2 * frame.chromaWidth + 6, 2),
+        };
+        for (TestFrame.Planes planes : sources) {
+            for (int[] region : REGIONS) {
+                for (int factor : FACTORS) {
+                    for (int rotation : ROTATIONS) {
+                        byte[] out = new byte[outputSize(region, factor)];
+                        YuvDownscaler.downscaleToNv21(
+                                planes.y, 0, planes.yRowStride,
+                                planes.u, 0, planes.v, 0, planes.uvRowStride, planes.uvPixelStride,
+                                region[0], region[1], region[2], region[3], factor, rotation, out);
+                        assertArrayEquals(describe(region, factor, rotation) + ", pixel stride "
+                                        + planes.uvPixelStride + ", row stride " + planes.yRowStride,
+                                reference(frame, region, factor, rotation), out);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsScaledSidesEven() {
+        assertEquals(34, YuvDownscaler.scaledSize(34, 1));
+        assertEquals(16, YuvDownscaler.scaledSize(34, 2));
+        assertEquals(10, YuvDownscaler.scaledSize(31, 3));
+        assertEquals(0, YuvDownscaler.scaledSize(9, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRegionsSmallerThanABox() {
+        TestFrame frame = TestFrame.random(8, 8, 3);
+        YuvDownscaler.downscaleToNv21(frame.nv21(), 0, 8, frame.nv21(), 65, frame.nv21(), 64, 8, 2,
+                0, 0, 8, 8, 5, 0, new byte[64]);
+    }
+
+    private static int outputSize(int[] region, int factor) {
+        return YuvPlaneConverter.nv21Size(
+                YuvDownscaler.scaledSize(region[2], factor), YuvDownscaler.scaledSize(region[3], factor));
+    }
+
+    private static String describe(int[] region, int factor, int rotation) {
+        return region[2] + "x" + region[3] + " at " + region[0] + "," + region[1]
+                + ", factor " + factor + ", rotation " + rotation;
+    }
+
+    // The region shrunk by averaging every box of samples with rounding, then turned a quarter
+    // clockwise as many times as the rotation asks for.
+    private static byte[] reference(TestFrame frame, int[] region, int factor, int rotation) {
+        int left = region[0];
+        int top = region[1];
+        int outWidth = (region[2] / factor) & ~1;
+        int outHeight = (region[3] / factor) & ~1;
+        int area = factor * factor;
+
+        int[][] y = new int[outHeight][outWidth];
+        for (int row = 0; row < outHeight; row++) {
+            for (int col = 0; col < outWidth; col++) {
+                int sum = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    for (int dx = 0; dx < factor; dx++) {
+                        sum += frame.luma(left + col * factor + dx, top + row * factor + dy);
+                    }
+                }
+                y[row][col] = (sum + area / 2) / area;
+            }
+        }
+        int[][] u = new int[outHeight / 2][outWidth / 2];
+        int[][] v = new int[outHeight / 2][outWidth / 2];
+        for (int row = 0; row < outHeight / 2; row++) {
+            for (int col = 0; col < outWidth / 2; col++) {
+                int uSum = 0;
+                int vSum = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    for (int dx = 0; dx < factor; dx++) {
+                        int x = left / 2 + col * factor + dx;
+                        int yy = top / 2 + row * factor + dy;
+                        uSum += frame.chromaU(x, yy);
+                        vSum += frame.chromaV(x, yy);
+                    }
+                }
+                u[row][col] = (uSum + area / 2) / area;
+                v[row][col] = (vSum + area / 2) / area;
+            }
+        }
+
+        for (int turn = 0; turn < rotation / 90; turn++) {
+            y = turnClockwise(y);
+            u = turnClockwise(u);
+            v = turnClockwise(v);
+        }
+
+        byte[] nv21 = new byte[YuvPlaneConverter.nv21Size(outWidth, outHeight)];
+        int i = 0;
+        for (int[] row : y) {
+            for (int sample : row) {
+                nv21[i++] = (byte) sample;
+            }
+        }
+        for (int row = 0; row < v.length; row++) {
+            for (int col = 0; col < v[row].length; col++) {
+                nv21[i++] = (byte) v[row][col];
+                nv21[i++] = (byte) u[row][col];
+            }
+        }
+        return nv21;
+    }
+
+    private static int[][] turnClockwise(int[][] plane) {
+        int height = plane.length;
+        int width = plane[0].length;
+        int[][] turned = new int[width][height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                turned[col][height - 1 - row] = plane[row][col];
+            }
+        }
+        return turned;
+    }
+}
@@ -0,0 +1,120 @@
+package com.google_ml_kit.vision;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class YuvPlaneConverterTest {
+    private static final int[] PIXEL_STRIDES = {1, 2};
+
+    @Test
+    public void assemblesTightlyPackedPlanes() {
+        TestFrame frame = TestFrame.random(16, 10, 1);
+        for (int pixelStride : PIXEL_STRIDES) {
+            TestFrame.Planes planes = frame.planes(16, 8 * pixelStride, pixelStride);
+            assertArrayEquals("pixel stride " + pixelStride, frame.nv21(), toNv21(planes, frame));
+        }
+    }
+
+    @Test
+    public void skipsRowPadding() {
+        TestFrame frame = TestFrame.random(16, 10, 2);
+        for (int pixelStride : PIXEL_STRIDES) {
+            // Strides padded the way camera HALs align rows.
+            TestFrame.Planes planes = frame.planes(32, 8 * pixelStride + 24, pixelStride);
+            assertArrayEquals("pixel stride " + pixelStride, frame.nv21(), toNv21(planes, frame));
+        }
+    }
+
+    @Test
+    public void readsInterleavedChromaWithTruncatedLastRow() {
+        TestFrame frame = TestFrame.random(640, 480, 3);
+        TestFrame.Planes planes = frame.planes(640, 640, 2);
+        // Android's U and V planes end on the last sample, one byte short of the row stride.
+        assertEquals(640 * 239 + 639, planes.u.length);
+        assertEquals(640 * 239 + 639, planes.v.length);
+        assertArrayEquals(frame.nv21(), toNv21(planes, frame));
+    }
+
+    @Test
+    public void assemblesOddSizes() {
+        int[][] sizes = {{7, 5}, {9, 4}, {6, 3}, {1, 1}};
+        for (int[] size : sizes) {
+            TestFrame frame = TestFrame.random(size[0], size[1], 4);
+            for (int pixelStride : PIXEL_STRIDES) {
+                TestFrame.Planes padded = frame.planes(size[0] + 3, frame.chromaWidth * pixelStride + 5, pixelStride);
+                TestFrame.Planes packed = frame.planes(size[0], frame.chromaWidth * pixelStride, pixelStride);
+                String message = size[0] + "x" + size[1] + ", pixel stride " + pixelStride;
+                assertArrayEquals(message, frame.nv21(), toNv21(padded, frame));
+                assertArrayEquals(message, frame.nv21(), toNv21(packed, frame));
+            }
+        }
+    }
+
+    @Test
+    public void assemblesRegionsOfPlanes() {
+        TestFrame frame = TestFrame.random(24, 18, 5);
+        int[][] regions = {{0, 0, 24, 18}, {4, 2, 10, 8}, {6, 8, 18, 10}, {2, 4, 7, 5}};
+        for (int pixelStride : PIXEL_STRIDES) {
+            TestFrame.Planes planes = frame.planes(32, 12 * pixelStride + 4, pixelStride);
+            for (int[] region : regions) {
+                TestFrame crop = frame.crop(region[0], region[1], region[2], region[3]);
+                ByteBuffer out = ByteBuffer.allocate(YuvPlaneConverter.nv21Size(region[2], region[3]));
+                YuvPlaneConverter.toNv21(planes.y, planes.yRowStride,
+                        planes.u, planes.v, planes.uvRowStride, planes.uvPixelStride,
+                        region[0], region[1], region[2], region[3], out);
+                assertEquals(out.capacity(), out.position());
+                assertArrayEquals(crop.nv21(), out.array());
+            }
+        }
+    }
+
+    @Test
+    public void cropsNv21() {
+        TestFrame frame = TestFrame.random(24, 18, 6);
+        byte[] nv21 = frame.nv21();
+        int[][] regions = {{0, 0, 24, 18}, {4, 2, 10, 8}, {6, 8, 18, 10}, {22, 16, 2, 2}};
+        for (int[] region : regions) {
+            TestFrame crop = frame.crop(region[0], region[1], region[2], region[3]);
+            ByteBuffer out = ByteBuffer.allocate(YuvPlaneConverter.nv21Size(region[2], region[3]));
+            YuvPlaneConverter.cropNv21(nv21, frame.width, frame.height,
+                    region[0], region[1], region[2], region[3], out);
+            assertEquals(out.capacity(), out.position());
+            assertArrayEquals(crop.nv21(), out.array());
+        }
+    }
+
+    @Test
+    public void writesAtTheBufferPosition() {
+        TestFrame frame = TestFrame.random(8, 6, 7);
+        int size = YuvPlaneConverter.nv21Size(8, 6);
+        ByteBuffer out = ByteBuffer.allocate(size + 5);
+        out.position(5);
+        TestFrame.Planes planes = frame.planes(8, 8, 2);
+        YuvPlaneConverter.toNv21(planes.y, planes.yRowStride,
+                planes.u, planes.v, planes.uvRowStride, planes.uvPixelStride, 8, 6, out);
+        assertEquals(size + 5, out.position());
+        byte[] written = new byte[size];
+        System.arraycopy(out.array(), 5, written, 0, size);
+        assertArrayEquals(frame.nv21(), written);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddCropOrigins() {
+        TestFrame frame = TestFrame.random(8, 6, 8);
+        YuvPlaneConverter.cropNv21(frame.nv21(), 8, 6, 1, 0, 4, 4,
+                ByteBuffer.allocate(YuvPlaneConverter.nv21Size(4, 4)));
+    }
+
+    private static byte[] toNv21(TestFrame.Planes planes, TestFrame frame) {
+        ByteBuffer out = ByteBuffer.allocate(YuvPlaneConverter.nv21Size(frame.width, frame.height));
+        YuvPlaneConverter.toNv21(planes.y, planes.yRowStride,
+                planes.u, planes.v, planes.uvRowStride, planes.uvPixelStride,
+                frame.width, frame.height, out);
+        assertEquals(out.capacity(), out.position());
+        return out.array();
+    }
+}
@@ -0,0 +1,108 @@
+package com.google_ml_kit.vision.classification;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks how {@link ClassificationResult} picks its most likely class, and the class ids of the
+ * {@link ClassDictionary} it is indexed by.
+ */
+public class ClassificationResultTest {
+  private static final ClassDictionary CLASSES = ClassDictionary.fromSamples(Arrays.asList(
+      sample("squats_down"), sample("pushups_up"), sample("squats_down"), sample("pushups_down"),
+      sample("pushups_up"), sample("squats_up")));
+
+  @Test
+  public void assignsIdsInOrderOfFirstAppearance() {
+    assertEquals(4, CLASSES.size());
+    String[] expected = {"squats_down", "pushups_up", "pushups_down", "squats_up"};
+    for (int id = 0; id < expected.length; id++) {
+      assertEquals(expected[id], CLASSES.getClassName(id));
+      assertEquals(id, CLASSES.getClassId(expected[id]));
+    }
+    assertEquals(-1, CLASSES.getClassId("lunges_down"));
+
+    // Ids only depend on the samples, so dictionaries built from the same samples agree.
+    List<PoseSample> samples = new ArrayList<>();
+    for (String className : expected) {
+      samples.add(sample(className));
+      samples.add(sample(className));
+    }
+    ClassDictionary rebuilt = ClassDictionary.fromSamples(samples);
+    for (int id = 0; id < expected.length; id++) {
+      assertEquals(CLASSES.getClassName(id), rebuilt.getClassName(id));
+    }
+  }
+
+  @Test
+  public void picksTheLargerOfCloseConfidences() {
+    // Smoothed confidences differ by fractions, which must not be lost to rounding.
+    ClassificationResult result = new ClassificationResult(CLASSES);
+    result.putClassConfidence("squats_down", 4.25f);
+    result.putClassConfidence("pushups_up", 4.5f);
+    result.putClassConfidence("pushups_down", 4.375f);
+    assertEquals(1, result.getMaxConfidenceClassId());
+    assertEquals("pushups_up", result.getMaxConfidenceClass());
+
+    result.putClassConfidence("squats_up", 4.5001f);
+    assertEquals("squats_up", result.getMaxConfidenceClass());
+  }
+
+  @Test
+  public void breaksTiesByTheLowestClassId() {
+    ClassificationResult result = new ClassificationResult(CLASSES);
+    result.putClassConfidence("squats_up", 5);
+    result.putClassConfidence("pushups_down", 5);
+    result.putClassConfidence("pushups_up", 5);
+    assertEquals(CLASSES.getClassId("pushups_up"), result.getMaxConfidenceClassId());
+
+    // Whatever order the confidences were set in.
+    ClassificationResult reversed = new ClassificationResult(CLASSES);
+    reversed.putClassConfidence("pushups_up", 5);
+    reversed.putClassConfidence("pushups_down", 5);
+    reversed.putClassConfidence("squats_up", 5);
+    assertEquals("pushups_up", reversed.getMaxConfidenceClass());
+  }
+
+  @Test
+  public void skipsClassesWithoutAConfidence() {
+    ClassificationResult empty = new ClassificationResult(CLASSES);
+    assertEquals(-1, empty.getMaxConfidenceClassId());
+    assertNull(empty.getMaxConfidenceClass());
+    assertEquals(0, empty.getAllClasses().size());
+
+    // A class set to 0 is part of the result, unset ones with the same value are not.
+    ClassificationResult zero = new ClassificationResult(CLASSES);
+    zero.putClassConfidence("squats_up", 0);
+    assertEquals("squats_up", zero.getMaxConfidenceClass());
+    assertEquals(Arrays.asList("squats_up"), new ArrayList<>(zero.getAllClasses()));
+  }
+
+  @Test
+  public void countsNeighborsPerClass() {
+    ClassificationResult result = new ClassificationResult(CLASSES);
+    for (int i = 0; i < 3; i++) {
+      result.incrementClassConfidence("pushups_down");
+    }
+    result.incrementClassConfidence(CLASSES.getClassId("squats_down"));
+    assertEquals(3, result.getClassConfidence("pushups_down"), 0);
+    assertEquals(1, result.getClassConfidence("squats_down"), 0);
+    assertEquals(0, result.getClassConfidence("lunges_down"), 0);
+    assertEquals(Arrays.asList("squats_down", "pushups_down"), new ArrayList<>(result.getAllClasses()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownClasses() {
+    new ClassificationResult(CLASSES).putClassConfidence("lunges_down", 1);
+  }
+
+  private static PoseSample sample(String className) {
+    return new PoseSample(className, className, new float[0]);
+  }
+}
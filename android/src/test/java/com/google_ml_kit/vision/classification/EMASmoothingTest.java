@@ -0,0 +1,164 @@
+package com.google_ml_kit.vision.classification;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link EMASmoothing}, which updates per-class sums as results enter and leave the window,
+ * against the weighted mean over the whole window it replaced.
+ */
+public class EMASmoothingTest {
+  private static final String[] CLASSES = {"pushups_down", "pushups_up", "squats_down", "squats_up"};
+  private static final float EPSILON = 1e-4f;
+
+  @Test
+  public void matchesTheWindowedEmaOnRandomSequences() {
+    ClassDictionary classDictionary = dictionary(CLASSES);
+    Random random = new Random(41);
+    int[] windowSizes = {1, 3, 10};
+    float[] alphas = {0.2f, 0.5f, 0.9f};
+    for (int windowSize : windowSizes) {
+      for (float alpha : alphas) {
+        EMASmoothing smoothing = new EMASmoothing(windowSize, alpha);
+        ReferenceSmoothing reference = new ReferenceSmoothing(windowSize, alpha);
+        // Each class comes and goes in runs of random length, some shorter than the window and
+        // some absences longer, so classes drop out of the window entirely and come back. Long
+        // enough to evict many times.
+        boolean[] present = new boolean[CLASSES.length];
+        int[] runLeft = new int[CLASSES.length];
+        for (int step = 0; step < 500; step++) {
+          ClassificationResult result = new ClassificationResult(classDictionary);
+          for (int id = 0; id < CLASSES.length; id++) {
+            if (runLeft[id]-- == 0) {
+              present[id] = !present[id];
+              runLeft[id] = random.nextInt(present[id] ? 12 : 15);
+            }
+            if (present[id]) {
+              result.putClassConfidence(id, random.nextInt(11) * random.nextFloat());
+            }
+          }
+          assertSameResult("window " + windowSize + ", alpha " + alpha + ", step " + step,
+              reference.getSmoothedResult(result), smoothing.getSmoothedResult(result));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void dropsClassesOnceTheyLeaveTheWindow() {
+    ClassDictionary classDictionary = dictionary(CLASSES);
+    EMASmoothing smoothing = new EMASmoothing(3, 0.2f);
+    ClassificationResult down = new ClassificationResult(classDictionary);
+    down.putClassConfidence("pushups_down", 10);
+    ClassificationResult up = new ClassificationResult(classDictionary);
+    up.putClassConfidence("pushups_up", 10);
+
+    smoothing.getSmoothedResult(down);
+    smoothing.getSmoothedResult(up);
+    assertEquals(setOf("pushups_down", "pushups_up"), smoothing.getSmoothedResult(up).getAllClasses());
+    ClassificationResult smoothed = smoothing.getSmoothedResult(up);
+    assertEquals(setOf("pushups_up"), smoothed.getAllClasses());
+    // Evicting the last result of a class leaves no rounding error behind in the others.
+    assertEquals(10, smoothed.getClassConfidence("pushups_up"), EPSILON);
+  }
+
+  @Test
+  public void restartsWithResultsOfAnotherDictionary() {
+    ClassDictionary first = dictionary(CLASSES);
+    ClassDictionary second = dictionary("squats_up", "squats_down");
+    EMASmoothing smoothing = new EMASmoothing(5, 0.2f);
+    ClassificationResult result = new ClassificationResult(first);
+    result.putClassConfidence("pushups_down", 10);
+    smoothing.getSmoothedResult(result);
+
+    result = new ClassificationResult(second);
+    result.putClassConfidence("squats_up", 4);
+    ClassificationResult smoothed = smoothing.getSmoothedResult(result);
+    assertEquals(second, smoothed.getClassDictionary());
+    assertEquals(setOf("squats_up"), smoothed.getAllClasses());
+    assertEquals(4, smoothed.getClassConfidence("squats_up"), EPSILON);
+  }
+
+  private static void assertSameResult(String message, ClassificationResult expected,
+      ClassificationResult actual) {
+    assertEquals(message, expected.getAllClasses(), actual.getAllClasses());
+    for (String className : expected.getAllClasses()) {
+      assertEquals(message + ", " + className, expected.getClassConfidence(className),
+          actual.getClassConfidence(className), EPSILON);
+    }
+  }
+
+  private static ClassDictionary dictionary(String... classNames) {
+    List<PoseSample> samples = new ArrayList<>();
+    for (String className : classNames) {
+      samples.add(new PoseSample(className, className, new float[0]));
+    }
+    return ClassDictionary.fromSamples(samples);
+  }
+
+  private static Set<String> setOf(String... classNames) {
+    Set<String> classes = new HashSet<>();
+    for (String className : classNames) {
+      classes.add(className);
+    }
+    return classes;
+  }
+
+  /** The smoothing EMASmoothing did before, re-weighing the whole window for every result. */
+  private static class ReferenceSmoothing {
+    private final int windowSize;
+    private final float alpha;
+    private final Deque<ClassificationResult> window = new ArrayDeque<>();
+
+    ReferenceSmoothing(int windowSize, float alpha) {
+      this.windowSize = windowSize;
+      this.alpha = alpha;
+    }
+
+    ClassificationResult getSmoothedResult(ClassificationResult classificationResult) {
+      if (window.size() == windowSize) {
+        window.pollLast();
+      }
+      window.addFirst(classificationResult);
+
+      Set<String> allClasses = new HashSet<>();
+      for (ClassificationResult result : window) {
+        allClasses.addAll(result.getAllClasses());
+      }
+
+      Map<String, Float> smoothed = new TreeMap<>();
+      for (String className : allClasses) {
+        float factor = 1;
+        float topSum = 0;
+        float bottomSum = 0;
+        for (ClassificationResult result : window) {
+          float value = result.getClassConfidence(className);
+
+          topSum += factor * value;
+          bottomSum += factor;
+
+          factor = (float) (factor * (1.0 - alpha));
+        }
+        smoothed.put(className, topSum / bottomSum);
+      }
+
+      ClassificationResult smoothedResult =
+          new ClassificationResult(classificationResult.getClassDictionary());
+      for (Map.Entry<String, Float> entry : smoothed.entrySet()) {
+        smoothedResult.putClassConfidence(entry.getKey(), entry.getValue());
+      }
+      return smoothedResult;
+    }
+  }
+}
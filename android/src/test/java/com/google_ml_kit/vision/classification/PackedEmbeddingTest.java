@@ -0,0 +1,145 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google_ml_kit.vision.classification.Utils.maxAbs;
+import static com.google_ml_kit.vision.classification.Utils.multiply;
+import static com.google_ml_kit.vision.classification.Utils.subtract;
+import static com.google_ml_kit.vision.classification.Utils.sumAbs;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the packed embedding kernels of {@link PoseClassifier} against the {@link PointF3D} based
+ * scoring they replaced, which allocated a point per operation.
+ */
+public class PackedEmbeddingTest {
+  private static final PointF3D AXES_WEIGHTS = PointF3D.from(1, 1, 0.2f);
+  private static final int QUERIES = 50;
+
+  private static List<PoseSample> samples;
+  private static List<List<PointF3D>> queries;
+
+  @BeforeClass
+  public static void loadSamples() throws IOException {
+    samples = TestPoses.bundledSamples();
+    queries = TestPoses.queries(QUERIES, 3);
+  }
+
+  @Test
+  public void embeddingHoldsEveryVector() {
+    assertEquals(PoseEmbedding.EMBEDDING_SIZE, samples.get(0).getEmbedding().length);
+  }
+
+  @Test
+  public void kernelsMatchThePointPath() {
+    for (List<PointF3D> query : queries) {
+      float[] embedding = PoseEmbedding.getPoseEmbedding(query);
+      List<PointF3D> embeddingPoints = unpack(embedding);
+      for (PoseSample sample : samples) {
+        List<PointF3D> samplePoints = unpack(sample.getEmbedding());
+        assertBitsEqual(pointMaxDistance(embeddingPoints, samplePoints),
+            PoseClassifier.maxDistance(embedding, sample.getEmbedding(), AXES_WEIGHTS));
+        assertBitsEqual(pointSumDistance(embeddingPoints, samplePoints),
+            PoseClassifier.sumDistance(embedding, sample.getEmbedding(), AXES_WEIGHTS));
+      }
+    }
+  }
+
+  @Test
+  public void classifyMatchesThePointPath() {
+    PoseClassifier poseClassifier = new PoseClassifier(samples);
+    for (List<PointF3D> query : queries) {
+      ClassificationResult result = poseClassifier.classify(query);
+      ClassificationResult expected = pointClassify(query);
+      assertEquals(expected.getAllClasses(), result.getAllClasses());
+      for (String className : expected.getAllClasses()) {
+        assertEquals(className, expected.getClassConfidence(className),
+            result.getClassConfidence(className), 0);
+      }
+    }
+  }
+
+  /**
+   * The classification of the point based implementation, with ties between samples broken by
+   * sample order like {@link TopK} does.
+   */
+  private static ClassificationResult pointClassify(List<PointF3D> landmarks) {
+    List<PointF3D> embedding = unpack(PoseEmbedding.getPoseEmbedding(landmarks));
+    List<PointF3D> flippedEmbedding = new ArrayList<>();
+    for (PointF3D vector : embedding) {
+      flippedEmbedding.add(PointF3D.from(-vector.getX(), vector.getY(), vector.getZ()));
+    }
+
+    Integer[] byMax = new Integer[samples.size()];
+    float[] maxDistances = new float[samples.size()];
+    for (int i = 0; i < byMax.length; i++) {
+      List<PointF3D> sampleEmbedding = unpack(samples.get(i).getEmbedding());
+      byMax[i] = i;
+      maxDistances[i] = Math.min(pointMaxDistance(embedding, sampleEmbedding),
+          pointMaxDistance(flippedEmbedding, sampleEmbedding));
+    }
+    Arrays.sort(byMax, byDistance(maxDistances));
+
+    int maxTopK = Math.min(30, byMax.length);
+    Integer[] byMean = Arrays.copyOf(byMax, maxTopK);
+    float[] meanDistances = new float[samples.size()];
+    for (int i : byMean) {
+      List<PointF3D> sampleEmbedding = unpack(samples.get(i).getEmbedding());
+      meanDistances[i] = Math.min(pointSumDistance(embedding, sampleEmbedding),
+          pointSumDistance(flippedEmbedding, sampleEmbedding)) / (embedding.size() * 2);
+    }
+    Arrays.sort(byMean, byDistance(meanDistances));
+
+    ClassificationResult result =
+        new ClassificationResult(ClassDictionary.fromSamples(samples));
+    for (int i = 0; i < Math.min(10, byMean.length); i++) {
+      result.incrementClassConfidence(samples.get(byMean[i]).getClassName());
+    }
+    return result;
+  }
+
+  private static Comparator<Integer> byDistance(float[] distances) {
+    return (a, b) -> {
+      int compare = Float.compare(distances[a], distances[b]);
+      return compare != 0 ? compare : Integer.compare(a, b);
+    };
+  }
+
+  private static float pointMaxDistance(List<PointF3D> embedding, List<PointF3D> sampleEmbedding) {
+    float maxDistance = 0;
+    for (int i = 0; i < embedding.size(); i++) {
+      maxDistance = Math.max(maxDistance,
+          maxAbs(multiply(subtract(embedding.get(i), sampleEmbedding.get(i)), AXES_WEIGHTS)));
+    }
+    return maxDistance;
+  }
+
+  private static float pointSumDistance(List<PointF3D> embedding, List<PointF3D> sampleEmbedding) {
+    float sum = 0;
+    for (int i = 0; i < embedding.size(); i++) {
+      sum += sumAbs(multiply(subtract(embedding.get(i), sampleEmbedding.get(i)), AXES_WEIGHTS));
+    }
+    return sum;
+  }
+
+  private static List<PointF3D> unpack(float[] embedding) {
+    List<PointF3D> points = new ArrayList<>(embedding.length / 3);
+    for (int i = 0; i < embedding.length; i += 3) {
+      points.add(PointF3D.from(embedding[i], embedding[i + 1], embedding[i + 2]));
+    }
+    return points;
+  }
+
+  private static void assertBitsEqual(float expected, float actual) {
+    assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual));
+  }
+}
@@ -0,0 +1,50 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that {@link PoseClassifier} classifies the same whether its samples are searched on one
+ * core or sharded over all of them.
+ */
+public class ParallelSearchTest {
+  // Enough for several shards, each large enough to be indexed.
+  private static final int SAMPLES = 30000;
+
+  private static List<PoseSample> samples;
+  private static List<List<PointF3D>> queries;
+
+  @BeforeClass
+  public static void loadSamples() throws IOException {
+    samples = TestPoses.syntheticSamples(SAMPLES, 5, 21);
+    queries = TestPoses.queries(50, 22);
+  }
+
+  @Test
+  public void parallelSearchMatchesSequentialSearch() {
+    assumeTrue("Needs several cores", Runtime.getRuntime().availableProcessors() > 1);
+    PoseClassifier sequential = new PoseClassifier(samples, Integer.MAX_VALUE);
+    PoseClassifier parallel = new PoseClassifier(samples, SAMPLES);
+    assertEquals(1, sequential.getShardCount());
+    assertTrue(parallel.getShardCount() > 1);
+
+    for (List<PointF3D> query : queries) {
+      ClassificationResult expected = sequential.classify(query);
+      ClassificationResult result = parallel.classify(query);
+      assertEquals(expected.getAllClasses(), result.getAllClasses());
+      for (String className : expected.getAllClasses()) {
+        assertEquals(className, expected.getClassConfidence(className),
+            result.getClassConfidence(className), 0);
+      }
+    }
+  }
+}
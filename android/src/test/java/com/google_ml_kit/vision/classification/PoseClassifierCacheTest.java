@@ -0,0 +1,144 @@
+package com.google_ml_kit.vision.classification;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PoseClassifierCacheTest {
+  private static PoseClassifier poseClassifier;
+
+  @BeforeClass
+  public static void loadClassifier() throws IOException {
+    List<PoseSample> samples = TestPoses.bundledSamples();
+    poseClassifier = new PoseClassifier(samples.subList(0, 100));
+  }
+
+  @Test
+  public void failedLoadsAreNotCached() throws IOException {
+    PoseClassifierCache cache = new PoseClassifierCache();
+    AtomicInteger loads = new AtomicInteger();
+
+    try {
+      cache.get("samples.csv", parallelMinSamples -> {
+        loads.incrementAndGet();
+        throw new IOException("No valid pose samples");
+      });
+      fail("Failed load returned a classifier");
+    } catch (IOException expected) {
+      // The session goes without samples.
+    }
+    assertEquals(0, cache.size());
+
+    // The next session loads again.
+    assertSame(poseClassifier, cache.get("samples.csv", parallelMinSamples -> {
+      loads.incrementAndGet();
+      return poseClassifier;
+    }));
+    assertSame(poseClassifier, cache.get("samples.csv", parallelMinSamples -> {
+      throw new AssertionError("Cached classifier loaded again");
+    }));
+    assertEquals(2, loads.get());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void loadsWithTheParallelThreshold() throws IOException {
+    PoseClassifierCache cache = new PoseClassifierCache();
+    List<Integer> thresholds = new ArrayList<>();
+    PoseClassifierCache.Loader loader = parallelMinSamples -> {
+      thresholds.add(parallelMinSamples);
+      return poseClassifier;
+    };
+
+    cache.get("samples.csv", loader);
+    cache.setParallelMinSamples(PoseClassifier.PARALLEL_MIN_SAMPLES);
+    assertEquals(1, cache.size());
+
+    // A new threshold drops the classifiers built with the previous one.
+    cache.setParallelMinSamples(1000);
+    assertEquals(0, cache.size());
+    cache.get("samples.csv", loader);
+    assertEquals(Arrays.asList(PoseClassifier.PARALLEL_MIN_SAMPLES, 1000), thresholds);
+  }
+
+  @Test(timeout = 10000)
+  public void concurrentMissesShareOneLoad() throws Exception {
+    PoseClassifierCache cache = new PoseClassifierCache();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      PoseClassifierCache.Loader loader = parallelMinSamples -> {
+        loads.incrementAndGet();
+        loading.countDown();
+        awaitRelease(release);
+        return poseClassifier;
+      };
+      Future<PoseClassifier> first = executor.submit(() -> cache.get("samples.csv", loader));
+      assertTrue(loading.await(5, TimeUnit.SECONDS));
+      Future<PoseClassifier> second = executor.submit(() -> cache.get("samples.csv", loader));
+      Future<PoseClassifier> third = executor.submit(() -> cache.get("samples.csv", loader));
+      release.countDown();
+
+      assertSame(poseClassifier, first.get(5, TimeUnit.SECONDS));
+      assertSame(poseClassifier, second.get(5, TimeUnit.SECONDS));
+      assertSame(poseClassifier, third.get(5, TimeUnit.SECONDS));
+      assertEquals(1, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void slowLoadDoesNotBlockOtherAssets() throws Exception {
+    PoseClassifierCache cache = new PoseClassifierCache();
+    cache.get("activities.csv", parallelMinSamples -> poseClassifier);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<PoseClassifier> slow = executor.submit(() -> cache.get("samples.csv", parallelMinSamples -> {
+        loading.countDown();
+        awaitRelease(release);
+        return poseClassifier;
+      }));
+      assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+      // Answered while the other load is still running.
+      assertSame(poseClassifier, cache.get("activities.csv", parallelMinSamples -> {
+        throw new AssertionError("Cached classifier loaded again");
+      }));
+
+      release.countDown();
+      assertSame(poseClassifier, slow.get(5, TimeUnit.SECONDS));
+      assertEquals(2, cache.size());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void awaitRelease(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
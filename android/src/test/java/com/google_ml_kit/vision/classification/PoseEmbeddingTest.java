@@ -0,0 +1,72 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link PoseEmbedding#getFlippedEmbedding}, derived from the embedding, against the
+ * embedding recomputed from mirrored landmarks that {@link PoseClassifier} used before.
+ */
+public class PoseEmbeddingTest {
+  private static List<List<PointF3D>> poses;
+
+  @BeforeClass
+  public static void loadPoses() throws IOException {
+    poses = new ArrayList<>();
+    for (TestPoses.LabeledLandmarks row : TestPoses.bundledLandmarks()) {
+      poses.add(row.landmarks);
+    }
+    poses.addAll(TestPoses.queries(200, 31));
+  }
+
+  @Test
+  public void flippedEmbeddingMatchesTheEmbeddingOfMirroredLandmarks() {
+    for (List<PointF3D> landmarks : poses) {
+      float[] flipped = PoseEmbedding.getFlippedEmbedding(PoseEmbedding.getPoseEmbedding(landmarks));
+      float[] recomputed = PoseEmbedding.getPoseEmbedding(mirror(landmarks, 0));
+      // Negating X is exact, so both agree to the bit apart from the sign of zeros.
+      assertEquals(recomputed.length, flipped.length);
+      for (int i = 0; i < flipped.length; i++) {
+        assertEquals(recomputed[i], flipped[i], 0);
+      }
+    }
+  }
+
+  @Test
+  public void flippedEmbeddingMatchesLandmarksMirroredInTheImage() {
+    for (List<PointF3D> landmarks : poses) {
+      float[] flipped = PoseEmbedding.getFlippedEmbedding(PoseEmbedding.getPoseEmbedding(landmarks));
+      // Mirroring across the image's vertical center line only adds rounding of the translation.
+      float[] recomputed = PoseEmbedding.getPoseEmbedding(mirror(landmarks, 720));
+      for (int i = 0; i < flipped.length; i++) {
+        assertEquals(recomputed[i], flipped[i], 1e-3f);
+      }
+    }
+  }
+
+  @Test
+  public void flippingTwiceRestoresTheEmbedding() {
+    float[] embedding = PoseEmbedding.getPoseEmbedding(poses.get(0));
+    float[] twice = PoseEmbedding.getFlippedEmbedding(PoseEmbedding.getFlippedEmbedding(embedding));
+    for (int i = 0; i < embedding.length; i++) {
+      assertEquals(embedding[i], twice[i], 0);
+    }
+  }
+
+  /** Mirrors the landmarks across the vertical line at {@code width / 2}, keeping their labels. */
+  private static List<PointF3D> mirror(List<PointF3D> landmarks, float width) {
+    List<PointF3D> mirrored = new ArrayList<>(landmarks.size());
+    for (PointF3D landmark : landmarks) {
+      mirrored.add(PointF3D.from(width - landmark.getX(), landmark.getY(), landmark.getZ()));
+    }
+    return mirrored;
+  }
+}
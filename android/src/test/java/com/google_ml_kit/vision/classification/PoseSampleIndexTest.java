@@ -0,0 +1,109 @@
+package com.google_ml_kit.vision.classification;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PoseSampleIndexTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // The csv assets shipping with a precompiled index, see PoseClassifierProcessor.
+  private static final String[] INDEXED_CSVS = {
+      "fitness_poses_csvs_out_all.csv", "fitness_pose_activities.csv"
+  };
+
+  @Test
+  public void indexHoldsTheSamplesOfItsCsv() throws IOException {
+    byte[] csv = csv(TestPoses.SAMPLES_CSV);
+    ByteArrayOutputStream index = new ByteArrayOutputStream();
+    int sampleCount = PoseSampleIndex.write(csv, index);
+
+    List<PoseSample> expected = PoseSampleIndex.readCsv(new ByteArrayInputStream(csv));
+    List<PoseSample> actual =
+        PoseSampleIndex.read(new ByteArrayInputStream(index.toByteArray()), csv);
+    assertEquals(expected.size(), sampleCount);
+    assertSamplesEqual(expected, actual);
+  }
+
+  @Test
+  public void rejectsTheIndexOfAnEditedCsv() throws IOException {
+    byte[] csv = csv(TestPoses.SAMPLES_CSV);
+    ByteArrayOutputStream index = new ByteArrayOutputStream();
+    PoseSampleIndex.write(csv, index);
+
+    String text = new String(csv, UTF_8);
+    // Same length, one class name changed.
+    assertRejected(index.toByteArray(), text.replaceFirst(",wall,", ",walk,").getBytes(UTF_8));
+    // Last row removed.
+    String truncated = text.substring(0, text.lastIndexOf('\n', text.length() - 2) + 1);
+    assertRejected(index.toByteArray(), truncated.getBytes(UTF_8));
+  }
+
+  @Test
+  public void startupCheckComparesTheCsvLength() throws IOException {
+    byte[] csv = csv(TestPoses.SAMPLES_CSV);
+    ByteArrayOutputStream index = new ByteArrayOutputStream();
+    PoseSampleIndex.write(csv, index);
+
+    List<PoseSample> actual =
+        PoseSampleIndex.read(new ByteArrayInputStream(index.toByteArray()), csv.length);
+    assertSamplesEqual(PoseSampleIndex.readCsv(new ByteArrayInputStream(csv)), actual);
+    try {
+      PoseSampleIndex.read(new ByteArrayInputStream(index.toByteArray()), csv.length - 1);
+      fail("Index of a csv of another length was accepted");
+    } catch (IOException expected) {
+      // The loader falls back to the csv.
+    }
+  }
+
+  /**
+   * The plugin only compares the csv length at startup, so this checksum check is what catches
+   * csvs edited to the same length without regenerating their index.
+   */
+  @Test
+  public void bundledIndexesAreCurrent() throws IOException {
+    for (String csvName : INDEXED_CSVS) {
+      byte[] csv = csv(csvName);
+      byte[] index = Files.readAllBytes(
+          TestPoses.asset(csvName.replace(".csv", ".bin")).toPath());
+      List<PoseSample> actual;
+      try {
+        actual = PoseSampleIndex.read(new ByteArrayInputStream(index), csv);
+      } catch (IOException e) {
+        throw new AssertionError(
+            "Regenerate the index of " + csvName + " with the poseSampleIndex task", e);
+      }
+      assertSamplesEqual(PoseSampleIndex.readCsv(new ByteArrayInputStream(csv)), actual);
+    }
+  }
+
+  private static byte[] csv(String name) throws IOException {
+    return Files.readAllBytes(TestPoses.asset(name).toPath());
+  }
+
+  private static void assertRejected(byte[] index, byte[] csv) {
+    try {
+      PoseSampleIndex.read(new ByteArrayInputStream(index), csv);
+      fail("Index of a different csv was accepted");
+    } catch (IOException expected) {
+      // The loader falls back to the csv.
+    }
+  }
+
+  private static void assertSamplesEqual(List<PoseSample> expected, List<PoseSample> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getName(), actual.get(i).getName());
+      assertEquals(expected.get(i).getClassName(), actual.get(i).getClassName());
+      assertArrayEquals(expected.get(i).getEmbedding(), actual.get(i).getEmbedding(), 0);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.google_ml_kit.vision.classification;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds {@link RepetitionEngine} synthetic classification results, with confidences in the
+ * [0, 10] range of a top 10 classifier.
+ */
+public class RepetitionEngineTest {
+  private static final String PUSHUPS = "pushups_down";
+  private static final String SQUATS = "squats_down";
+  private static final ClassDictionary CLASSES = dictionary(PUSHUPS, SQUATS, "neutral");
+  private static final RepetitionEngine.Thresholds DEFAULTS = new RepetitionEngine.Thresholds(
+      RepetitionCounter.DEFAULT_ENTER_THRESHOLD, RepetitionCounter.DEFAULT_EXIT_THRESHOLD);
+
+  @Test
+  public void countsClassesIndependently() {
+    RepetitionEngine engine = engine(DEFAULTS, DEFAULTS);
+    // Both poses are entered before either is left, a single counter would see one rep.
+    assertFalse(engine.addClassificationResult(result(9, 0)));
+    assertFalse(engine.addClassificationResult(result(9, 9)));
+    assertTrue(engine.addClassificationResult(result(1, 9)));
+    assertTrue(engine.addClassificationResult(result(1, 1)));
+    assertFalse(engine.addClassificationResult(result(9, 1)));
+    assertTrue(engine.addClassificationResult(result(1, 1)));
+
+    RepetitionEngine.Snapshot snapshot = engine.getSnapshot();
+    assertEquals(2, (int) snapshot.getRepsByClass().get(PUSHUPS));
+    assertEquals(1, (int) snapshot.getRepsByClass().get(SQUATS));
+    assertEquals(Arrays.asList(PUSHUPS, SQUATS), new ArrayList<>(snapshot.getRepsByClass().keySet()));
+    assertEquals(PUSHUPS, snapshot.getActiveClass());
+    assertEquals(2, snapshot.getActiveReps());
+  }
+
+  @Test
+  public void customThresholdsDecideWhenARepFires() {
+    // Pushups need a more confident entry and a clearer exit than squats, fed the same values.
+    RepetitionEngine engine = engine(new RepetitionEngine.Thresholds(8, 2), DEFAULTS);
+    float[] confidences = {7, 3, 7, 9, 3, 1};
+    int[] expectedPushups = {0, 0, 0, 0, 0, 1};
+    int[] expectedSquats = {0, 1, 1, 1, 2, 2};
+    for (int i = 0; i < confidences.length; i++) {
+      engine.addClassificationResult(result(confidences[i], confidences[i]));
+      Map<String, Integer> reps = engine.getSnapshot().getRepsByClass();
+      assertEquals("result " + i, expectedPushups[i], (int) reps.get(PUSHUPS));
+      assertEquals("result " + i, expectedSquats[i], (int) reps.get(SQUATS));
+    }
+  }
+
+  @Test
+  public void repOfAnotherClassClosesTheSet() {
+    RepetitionEngine engine = engine(DEFAULTS, DEFAULTS);
+    countRep(engine, PUSHUPS);
+    countRep(engine, PUSHUPS);
+    countRep(engine, SQUATS);
+    countRep(engine, PUSHUPS);
+
+    RepetitionEngine.Snapshot snapshot = engine.getSnapshot();
+    assertSets(snapshot, PUSHUPS, 2, SQUATS, 1, PUSHUPS, 1);
+    // The active reps are those of the class over all its sets, not of the current set.
+    assertEquals(PUSHUPS, snapshot.getActiveClass());
+    assertEquals(3, snapshot.getActiveReps());
+  }
+
+  @Test
+  public void startNewSetClosesTheSetOfTheSameClass() {
+    RepetitionEngine engine = engine(DEFAULTS, DEFAULTS);
+    countRep(engine, SQUATS);
+    engine.startNewSet();
+    // Closing a set twice, or with no rep in it, adds no empty set.
+    engine.startNewSet();
+    countRep(engine, SQUATS);
+    countRep(engine, SQUATS);
+    assertSets(engine.getSnapshot(), SQUATS, 1, SQUATS, 2);
+    assertEquals(3, engine.getSnapshot().getActiveReps());
+  }
+
+  @Test
+  public void keepsTheSnapshotUntilACountChanges() {
+    RepetitionEngine engine = engine(DEFAULTS, DEFAULTS);
+    RepetitionEngine.Snapshot empty = engine.getSnapshot();
+    assertNull(empty.getActiveClass());
+    assertEquals(0, empty.getActiveReps());
+    assertTrue(empty.getSets().isEmpty());
+
+    engine.addClassificationResult(result(9, 0));
+    assertSame(empty, engine.getSnapshot());
+    engine.addClassificationResult(result(1, 0));
+    RepetitionEngine.Snapshot counted = engine.getSnapshot();
+    assertEquals(1, counted.getActiveReps());
+    // Earlier snapshots don't see later counts.
+    assertEquals(0, (int) empty.getRepsByClass().get(PUSHUPS));
+
+    engine.reset();
+    assertNull(engine.getSnapshot().getActiveClass());
+    assertEquals(0, (int) engine.getSnapshot().getRepsByClass().get(PUSHUPS));
+    assertTrue(engine.getSnapshot().getSets().isEmpty());
+  }
+
+  private static RepetitionEngine engine(
+      RepetitionEngine.Thresholds pushups, RepetitionEngine.Thresholds squats) {
+    Map<String, RepetitionEngine.Thresholds> thresholds = new LinkedHashMap<>();
+    thresholds.put(PUSHUPS, pushups);
+    thresholds.put(SQUATS, squats);
+    return new RepetitionEngine(thresholds);
+  }
+
+  /** Enters and leaves the pose of the class, the other class staying at 0. */
+  private static void countRep(RepetitionEngine engine, String className) {
+    boolean pushups = className.equals(PUSHUPS);
+    engine.addClassificationResult(pushups ? result(10, 0) : result(0, 10));
+    assertTrue(engine.addClassificationResult(result(0, 0)));
+  }
+
+  private static ClassificationResult result(float pushups, float squats) {
+    ClassificationResult result = new ClassificationResult(CLASSES);
+    result.putClassConfidence(PUSHUPS, pushups);
+    result.putClassConfidence(SQUATS, squats);
+    result.putClassConfidence("neutral", 10 - Math.max(pushups, squats));
+    return result;
+  }
+
+  /** Asserts the sets as pairs of class name and reps. */
+  private static void assertSets(RepetitionEngine.Snapshot snapshot, Object... expected) {
+    List<RepetitionEngine.RepSet> sets = snapshot.getSets();
+    assertEquals(expected.length / 2, sets.size());
+    for (int i = 0; i < sets.size(); i++) {
+      assertEquals("set " + i, expected[2 * i], sets.get(i).getClassName());
+      assertEquals("set " + i, expected[2 * i + 1], sets.get(i).getReps());
+    }
+  }
+
+  private static ClassDictionary dictionary(String... classNames) {
+    List<PoseSample> samples = new ArrayList<>();
+    for (String className : classNames) {
+      samples.add(new PoseSample(className, className, new float[0]));
+    }
+    return ClassDictionary.fromSamples(samples);
+  }
+}
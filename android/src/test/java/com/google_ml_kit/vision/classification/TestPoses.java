@@ -0,0 +1,114 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.common.base.Splitter;
+import com.google.mlkit.vision.common.PointF3D;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pose data for the classification tests: the bundled sample rows and synthetic sets and queries
+ * derived from them.
+ */
+final class TestPoses {
+  static final String SAMPLES_CSV = "fitness_poses_csvs_out_all.csv";
+  // Landmark jitter applied to derive synthetic samples and queries, in pixels.
+  static final float JITTER = 10f;
+
+  private TestPoses() {}
+
+  /**
+   * The bundled pose assets, relative to the plugin's android directory unless the
+   * {@code pose.assets} system property points elsewhere.
+   */
+  static File asset(String name) {
+    String assets = System.getProperty("pose.assets", "src/main/assets/pose");
+    return new File(assets, name);
+  }
+
+  /** Landmarks of every valid row of the bundled csv, with the class name of the row. */
+  static List<LabeledLandmarks> bundledLandmarks() throws IOException {
+    List<LabeledLandmarks> rows = new ArrayList<>();
+    for (String line : Files.readAllLines(asset(SAMPLES_CSV).toPath(), Charset.forName("UTF-8"))) {
+      List<String> tokens = Splitter.on(',').splitToList(line);
+      if (tokens.size() != 33 * 3 + 2) continue;
+      List<PointF3D> landmarks = new ArrayList<>();
+      for (int i = 2; i < tokens.size(); i += 3) {
+        landmarks.add(PointF3D.from(
+            Float.parseFloat(tokens.get(i)),
+            Float.parseFloat(tokens.get(i + 1)),
+            Float.parseFloat(tokens.get(i + 2))));
+      }
+      rows.add(new LabeledLandmarks(tokens.get(1), landmarks));
+    }
+    return rows;
+  }
+
+  /** Samples of every valid row of the bundled csv. */
+  static List<PoseSample> bundledSamples() throws IOException {
+    List<PoseSample> samples = new ArrayList<>();
+    for (LabeledLandmarks row : bundledLandmarks()) {
+      samples.add(new PoseSample("bundled" + samples.size(), row.className, row.landmarks));
+    }
+    return samples;
+  }
+
+  /**
+   * Jittered bundled rows, where every {@code duplicateEvery}-th sample repeats the embedding and
+   * class of a random earlier one so searches have to break ties.
+   */
+  static List<PoseSample> syntheticSamples(int count, int duplicateEvery, long seed)
+      throws IOException {
+    List<LabeledLandmarks> rows = bundledLandmarks();
+    Random random = new Random(seed);
+    List<PoseSample> samples = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      if (i > 0 && i % duplicateEvery == 0) {
+        PoseSample original = samples.get(random.nextInt(i));
+        samples.add(new PoseSample("synthetic" + i, original.getClassName(),
+            original.getEmbedding()));
+      } else {
+        LabeledLandmarks row = rows.get(random.nextInt(rows.size()));
+        samples.add(new PoseSample("synthetic" + i, row.className, jitter(row.landmarks, random)));
+      }
+    }
+    return samples;
+  }
+
+  /** Jittered bundled rows to classify. */
+  static List<List<PointF3D>> queries(int count, long seed) throws IOException {
+    List<LabeledLandmarks> rows = bundledLandmarks();
+    Random random = new Random(seed);
+    List<List<PointF3D>> queries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      queries.add(jitter(rows.get(random.nextInt(rows.size())).landmarks, random));
+    }
+    return queries;
+  }
+
+  static List<PointF3D> jitter(List<PointF3D> landmarks, Random random) {
+    List<PointF3D> jittered = new ArrayList<>(landmarks.size());
+    for (PointF3D landmark : landmarks) {
+      jittered.add(PointF3D.from(
+          landmark.getX() + (random.nextFloat() * 2 - 1) * JITTER,
+          landmark.getY() + (random.nextFloat() * 2 - 1) * JITTER,
+          landmark.getZ()));
+    }
+    return jittered;
+  }
+
+  static final class LabeledLandmarks {
+    final String className;
+    final List<PointF3D> landmarks;
+
+    LabeledLandmarks(String className, List<PointF3D> landmarks) {
+      this.className = className;
+      this.landmarks = landmarks;
+    }
+  }
+}
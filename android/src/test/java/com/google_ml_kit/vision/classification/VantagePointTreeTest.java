@@ -0,0 +1,91 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link VantagePointTree#search} against a brute force {@link TopK} over every sample. Both
+ * must retain the same samples in the same order, with the same distances.
+ */
+public class VantagePointTreeTest {
+  private static final PointF3D AXES_WEIGHTS = PointF3D.from(1, 1, 0.2f);
+  private static final int SAMPLES = PoseClassifier.INDEX_MIN_SAMPLES + 1000;
+  private static final int[] CAPACITIES = {1, 10, 30, 200};
+
+  @Test
+  public void matchesBruteForceOnJitteredSamples() throws IOException {
+    List<PoseSample> samples = TestPoses.syntheticSamples(SAMPLES, 7, 11);
+    assertMatchesBruteForce(samples, 0, samples.size(), queries(samples, 12));
+  }
+
+  @Test
+  public void matchesBruteForceOnHeavilyDuplicatedSamples() throws IOException {
+    // Every embedding is shared by about 60 samples, so ties decide most of the top-K.
+    List<PoseSample> distinct = TestPoses.syntheticSamples(50, Integer.MAX_VALUE, 13);
+    Random random = new Random(14);
+    List<PoseSample> samples = new ArrayList<>(SAMPLES);
+    for (int i = 0; i < SAMPLES; i++) {
+      PoseSample original = distinct.get(random.nextInt(distinct.size()));
+      samples.add(new PoseSample("duplicate" + i, original.getClassName(), original.getEmbedding()));
+    }
+    assertMatchesBruteForce(samples, 0, samples.size(), queries(samples, 15));
+  }
+
+  @Test
+  public void matchesBruteForceOverARange() throws IOException {
+    List<PoseSample> samples = TestPoses.syntheticSamples(SAMPLES + 700, 5, 16);
+    assertMatchesBruteForce(samples, 700, samples.size(), queries(samples, 17));
+  }
+
+  /** Jittered bundled rows, and samples of the set itself which tie with their duplicates. */
+  private static List<float[]> queries(List<PoseSample> samples, long seed) throws IOException {
+    List<float[]> queries = new ArrayList<>();
+    for (List<PointF3D> landmarks : TestPoses.queries(30, seed)) {
+      queries.add(PoseEmbedding.getPoseEmbedding(landmarks));
+    }
+    Random random = new Random(seed);
+    for (int i = 0; i < 10; i++) {
+      queries.add(samples.get(random.nextInt(samples.size())).getEmbedding());
+    }
+    return queries;
+  }
+
+  private static void assertMatchesBruteForce(List<PoseSample> samples, int from, int to,
+      List<float[]> queries) {
+    VantagePointTree tree = new VantagePointTree(samples, from, to, AXES_WEIGHTS,
+        PoseClassifier.discriminativeVectorOrder(samples, AXES_WEIGHTS));
+    float[] distances = new float[samples.size()];
+    for (float[] embedding : queries) {
+      float[] flippedEmbedding = PoseEmbedding.getFlippedEmbedding(embedding);
+      for (int i = from; i < to; i++) {
+        float[] sampleEmbedding = samples.get(i).getEmbedding();
+        distances[i] = Math.min(
+            PoseClassifier.maxDistance(embedding, sampleEmbedding, AXES_WEIGHTS),
+            PoseClassifier.maxDistance(flippedEmbedding, sampleEmbedding, AXES_WEIGHTS));
+      }
+
+      for (int capacity : CAPACITIES) {
+        TopK expected = new TopK(capacity);
+        for (int i = from; i < to; i++) {
+          expected.offer(i, distances[i]);
+        }
+        TopK actual = new TopK(capacity);
+        tree.search(embedding, flippedEmbedding, actual);
+
+        assertArrayEquals("top " + capacity, expected.sortedIndices(), actual.sortedIndices());
+        for (int i = 0; i < actual.size(); i++) {
+          assertEquals(distances[actual.index(i)], actual.distance(i), 0);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.common.base.Splitter;
+import com.google.mlkit.vision.common.PointF3D;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loads the bundled pose samples and derives synthetic sample sets and queries from them.
+ */
+final class BenchmarkData {
+  static final String SAMPLES_CSV = "fitness_poses_csvs_out_all.csv";
+  static final String SAMPLES_INDEX = "fitness_poses_csvs_out_all.bin";
+  // Landmark jitter applied to derive synthetic samples and queries, in pixels.
+  private static final float JITTER = 10f;
+
+  private BenchmarkData() {}
+
+  static File asset(String name) {
+    String assets = System.getProperty("pose.assets", "../android/src/main/assets/pose");
+    return new File(assets, name);
+  }
+
+  static List<PoseSample> bundledSamples() throws IOException {
+    try (InputStream in = new FileInputStream(asset(SAMPLES_CSV))) {
+      return PoseSampleIndex.readCsv(in);
+    }
+  }
+
+  /** Landmarks of every valid row of the bundled csv, with the class name of the row. */
+  static List<LabeledLandmarks> bundledLandmarks() throws IOException {
+    List<LabeledLandmarks> rows = new ArrayList<>();
+    for (String line : Files.readAllLines(asset(SAMPLES_CSV).toPath(), Charset.forName("UTF-8"))) {
+      List<String> tokens = Splitter.on(',').splitToList(line);
+      if (tokens.size() != 33 * 3 + 2) continue;
+      List<PointF3D> landmarks = new ArrayList<>();
+      for (int i = 2; i < tokens.size(); i += 3) {
+        landmarks.add(PointF3D.from(
+            Float.parseFloat(tokens.get(i)),
+            Float.parseFloat(tokens.get(i + 1)),
+            Float.parseFloat(tokens.get(i + 2))));
+      }
+      rows.add(new LabeledLandmarks(tokens.get(1), landmarks));
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the bundled samples when size is not positive, otherwise a synthetic set of the given
+   * size made of jittered bundled rows.
+   */
+  static List<PoseSample> samples(int size, long seed) throws IOException {
+    if (size <= 0) {
+      return bundledSamples();
+    }
+    List<LabeledLandmarks> rows = bundledLandmarks();
+    Random random = new Random(seed);
+    List<PoseSample> samples = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      LabeledLandmarks row = rows.get(random.nextInt(rows.size()));
+      samples.add(new PoseSample("synthetic" + i, row.className, jitter(row.landmarks, random)));
+    }
+    return samples;
+  }
+
+  static List<List<PointF3D>> queries(int count, long seed) throws IOException {
+    List<LabeledLandmarks> rows = bundledLandmarks();
+    Random random = new Random(seed);
+    List<List<PointF3D>> queries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      queries.add(jitter(rows.get(random.nextInt(rows.size())).landmarks, random));
+    }
+    return queries;
+  }
+
+  private static List<PointF3D> jitter(List<PointF3D> landmarks, Random random) {
+    List<PointF3D> jittered = new ArrayList<>(landmarks.size());
+    for (PointF3D landmark : landmarks) {
+      jittered.add(PointF3D.from(
+          landmark.getX() + (random.nextFloat() * 2 - 1) * JITTER,
+          landmark.getY() + (random.nextFloat() * 2 - 1) * JITTER,
+          landmark.getZ()));
+    }
+    return jittered;
+  }
+
+  static final class LabeledLandmarks {
+    final String className;
+    final List<PointF3D> landmarks;
+
+    LabeledLandmarks(String className, List<PointF3D> landmarks) {
+      this.className = className;
+      this.landmarks = landmarks;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Throughput of {@link EMASmoothing#getSmoothedResult} over a stream of real classification
+ * results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class EMASmoothingBenchmark {
+  private static final int NUM_RESULTS = 64;
+
+  private final ClassificationResult[] results = new ClassificationResult[NUM_RESULTS];
+  private EMASmoothing emaSmoothing;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    PoseClassifier poseClassifier = new PoseClassifier(BenchmarkData.bundledSamples());
+    List<List<PointF3D>> queries = BenchmarkData.queries(NUM_RESULTS, 4);
+    for (int i = 0; i < NUM_RESULTS; i++) {
+      results[i] = poseClassifier.classify(queries.get(i));
+    }
+    emaSmoothing = new EMASmoothing();
+  }
+
+  @Benchmark
+  public ClassificationResult getSmoothedResult() {
+    next = (next + 1) % NUM_RESULTS;
+    return emaSmoothing.getSmoothedResult(results[next]);
+  }
+}
@@ -0,0 +1,81 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Linear max distance scan of the first classification stage, scoring every sample in full versus
+ * with {@link PoseClassifier#boundedMaxDistance}. Both retain the same top K.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class MaxDistancePruningBenchmark {
+  private static final int NUM_QUERIES = 64;
+  private static final int TOP_K = 30;
+  private static final PointF3D AXES_WEIGHTS = PointF3D.from(1, 1, 0.2f);
+
+  // 0 is the bundled ~1.5k sample set.
+  @Param({"0", "10000"})
+  public int sampleCount;
+
+  private float[][] sampleEmbeddings;
+  private float[][] embeddings;
+  private float[][] flippedEmbeddings;
+  private int[] vectorOrder;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<PoseSample> samples = BenchmarkData.samples(sampleCount, 1);
+    sampleEmbeddings = new float[samples.size()][];
+    for (int i = 0; i < sampleEmbeddings.length; i++) {
+      sampleEmbeddings[i] = samples.get(i).getEmbedding();
+    }
+    vectorOrder = PoseClassifier.discriminativeVectorOrder(samples, AXES_WEIGHTS);
+
+    List<List<PointF3D>> queries = BenchmarkData.queries(NUM_QUERIES, 2);
+    embeddings = new float[NUM_QUERIES][];
+    flippedEmbeddings = new float[NUM_QUERIES][];
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      embeddings[i] = PoseEmbedding.getPoseEmbedding(queries.get(i));
+      flippedEmbeddings[i] = PoseEmbedding.getFlippedEmbedding(embeddings[i]);
+    }
+  }
+
+  @Benchmark
+  public float fullScan() {
+    next = (next + 1) % NUM_QUERIES;
+    float[] embedding = embeddings[next];
+    float[] flippedEmbedding = flippedEmbeddings[next];
+    TopK topK = new TopK(TOP_K);
+    for (int i = 0; i < sampleEmbeddings.length; i++) {
+      topK.offer(i, Math.min(
+          PoseClassifier.maxDistance(embedding, sampleEmbeddings[i], AXES_WEIGHTS),
+          PoseClassifier.maxDistance(flippedEmbedding, sampleEmbeddings[i], AXES_WEIGHTS)));
+    }
+    return topK.threshold();
+  }
+
+  @Benchmark
+  public float boundedScan() {
+    next = (next + 1) % NUM_QUERIES;
+    float[] embedding = embeddings[next];
+    float[] flippedEmbedding = flippedEmbeddings[next];
+    TopK topK = new TopK(TOP_K);
+    for (int i = 0; i < sampleEmbeddings.length; i++) {
+      topK.offer(i, PoseClassifier.boundedMaxDistance(embedding, flippedEmbedding,
+          sampleEmbeddings[i], AXES_WEIGHTS, vectorOrder, topK.threshold()));
+    }
+    return topK.threshold();
+  }
+}
@@ -0,0 +1,44 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Throughput of {@link PoseClassifier#classify} for the bundled sample set and larger synthetic
+ * ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class PoseClassifierBenchmark {
+  private static final int NUM_QUERIES = 64;
+
+  // 0 is the bundled ~1.5k sample set.
+  @Param({"0", "10000", "100000"})
+  public int sampleCount;
+
+  private PoseClassifier poseClassifier;
+  private List<List<PointF3D>> queries;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    poseClassifier = new PoseClassifier(BenchmarkData.samples(sampleCount, 1));
+    queries = BenchmarkData.queries(NUM_QUERIES, 2);
+  }
+
+  @Benchmark
+  public ClassificationResult classify() {
+    next = (next + 1) % NUM_QUERIES;
+    return poseClassifier.classify(queries.get(next));
+  }
+}
@@ -0,0 +1,42 @@
+package com.google_ml_kit.vision.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Throughput of {@link PoseEmbedding#getPoseEmbedding} and {@link PoseEmbedding#getFlippedEmbedding}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class PoseEmbeddingBenchmark {
+  private static final int NUM_QUERIES = 64;
+
+  private List<List<PointF3D>> queries;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    queries = BenchmarkData.queries(NUM_QUERIES, 3);
+  }
+
+  @Benchmark
+  public float[] getPoseEmbedding() {
+    next = (next + 1) % NUM_QUERIES;
+    return PoseEmbedding.getPoseEmbedding(queries.get(next));
+  }
+
+  @Benchmark
+  public float[] getPoseAndFlippedEmbedding() {
+    next = (next + 1) % NUM_QUERIES;
+    return PoseEmbedding.getFlippedEmbedding(PoseEmbedding.getPoseEmbedding(queries.get(next)));
+  }
+}
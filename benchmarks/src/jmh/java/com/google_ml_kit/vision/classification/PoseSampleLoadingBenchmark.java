@@ -0,0 +1,44 @@
+package com.google_ml_kit.vision.classification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load the bundled sample set from the csv and from the precompiled index. Files are read
+ * into memory up front so only parsing and embedding are measured. The index is checked against
+ * the csv's length only, like the plugin does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PoseSampleLoadingBenchmark {
+  private byte[] csv;
+  private byte[] index;
+
+  @Setup
+  public void setUp() throws IOException {
+    csv = Files.readAllBytes(BenchmarkData.asset(BenchmarkData.SAMPLES_CSV).toPath());
+    index = Files.readAllBytes(BenchmarkData.asset(BenchmarkData.SAMPLES_INDEX).toPath());
+  }
+
+  @Benchmark
+  public List<PoseSample> readCsv() throws IOException {
+    return PoseSampleIndex.readCsv(new ByteArrayInputStream(csv));
+  }
+
+  @Benchmark
+  public List<PoseSample> readIndex() throws IOException {
+    return PoseSampleIndex.read(new ByteArrayInputStream(index), csv.length);
+  }
+}
@@ -0,0 +1,18 @@
+package android.util;
+
+/**
+ * Desktop JVM shim of android.util.Log, for benchmarks and tests only.
+ */
+public final class Log {
+  private Log() {}
+
+  public static int e(String tag, String msg) {
+    System.err.println(tag + ": " + msg);
+    return 0;
+  }
+
+  public static int w(String tag, String msg) {
+    System.err.println(tag + ": " + msg);
+    return 0;
+  }
+}
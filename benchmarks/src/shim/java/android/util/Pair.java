@@ -0,0 +1,14 @@
+package android.util;
+
+/**
+ * Desktop JVM shim of android.util.Pair, for benchmarks and tests only.
+ */
+public class Pair<F, S> {
+  public final F first;
+  public final S second;
+
+  public Pair(F first, S second) {
+    this.first = first;
+    this.second = second;
+  }
+}
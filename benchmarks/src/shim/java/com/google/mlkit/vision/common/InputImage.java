@@ -0,0 +1,8 @@
+package com.google.mlkit.vision.common;
+
+/**
+ * Desktop JVM shim of ML Kit's InputImage, for benchmarks and tests only.
+ */
+public class InputImage {
+  private InputImage() {}
+}
@@ -0,0 +1,43 @@
+package com.google.mlkit.vision.common;
+
+/**
+ * Desktop JVM shim of ML Kit's PointF3D, for benchmarks and tests only.
+ */
+public abstract class PointF3D {
+  public abstract float getX();
+
+  public abstract float getY();
+
+  public abstract float getZ();
+
+  public static PointF3D from(float x, float y, float z) {
+    return new Point(x, y, z);
+  }
+
+  private static final class Point extends PointF3D {
+    private final float x;
+    private final float y;
+    private final float z;
+
+    Point(float x, float y, float z) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+    }
+
+    @Override
+    public float getX() {
+      return x;
+    }
+
+    @Override
+    public float getY() {
+      return y;
+    }
+
+    @Override
+    public float getZ() {
+      return z;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.google.mlkit.vision.pose;
+
+import java.util.List;
+
+/**
+ * Desktop JVM shim of ML Kit's Pose, for benchmarks and tests only.
+ */
+public class Pose {
+  private final List<PoseLandmark> landmarks;
+
+  public Pose(List<PoseLandmark> landmarks) {
+    this.landmarks = landmarks;
+  }
+
+  public List<PoseLandmark> getAllPoseLandmarks() {
+    return landmarks;
+  }
+}
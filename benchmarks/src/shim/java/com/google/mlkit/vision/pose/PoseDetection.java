@@ -0,0 +1,13 @@
+package com.google.mlkit.vision.pose;
+
+/**
+ * Desktop JVM shim of ML Kit's PoseDetection, for benchmarks and tests only. There is no detector
+ * on the desktop, tests inject their own clients.
+ */
+public final class PoseDetection {
+  private PoseDetection() {}
+
+  public static PoseDetector getClient(PoseDetectorOptionsBase options) {
+    throw new UnsupportedOperationException("ML Kit is not available on the desktop JVM");
+  }
+}
@@ -0,0 +1,8 @@
+package com.google.mlkit.vision.pose;
+
+/**
+ * Desktop JVM shim of ML Kit's PoseDetector client, for benchmarks and tests only.
+ */
+public interface PoseDetector {
+  void close();
+}
@@ -0,0 +1,9 @@
+package com.google.mlkit.vision.pose;
+
+/**
+ * Desktop JVM shim of ML Kit's PoseDetectorOptionsBase, for benchmarks and tests only.
+ */
+public abstract class PoseDetectorOptionsBase {
+  public static final int STREAM_MODE = 1;
+  public static final int SINGLE_IMAGE_MODE = 2;
+}
@@ -0,0 +1,18 @@
+package com.google.mlkit.vision.pose.accurate;
+
+import com.google.mlkit.vision.pose.PoseDetectorOptionsBase;
+
+/**
+ * Desktop JVM shim of ML Kit's AccuratePoseDetectorOptions, for benchmarks and tests only.
+ */
+public class AccuratePoseDetectorOptions extends PoseDetectorOptionsBase {
+  public static class Builder {
+    public Builder setDetectorMode(int detectorMode) {
+      return this;
+    }
+
+    public AccuratePoseDetectorOptions build() {
+      return new AccuratePoseDetectorOptions();
+    }
+  }
+}
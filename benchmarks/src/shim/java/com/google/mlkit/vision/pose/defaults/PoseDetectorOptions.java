@@ -0,0 +1,18 @@
+package com.google.mlkit.vision.pose.defaults;
+
+import com.google.mlkit.vision.pose.PoseDetectorOptionsBase;
+
+/**
+ * Desktop JVM shim of ML Kit's PoseDetectorOptions, for benchmarks and tests only.
+ */
+public class PoseDetectorOptions extends PoseDetectorOptionsBase {
+  public static class Builder {
+    public Builder setDetectorMode(int detectorMode) {
+      return this;
+    }
+
+    public PoseDetectorOptions build() {
+      return new PoseDetectorOptions();
+    }
+  }
+}
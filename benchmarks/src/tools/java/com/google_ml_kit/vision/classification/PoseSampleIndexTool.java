@@ -0,0 +1,32 @@
+package com.google_ml_kit.vision.classification;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Generates the {@link PoseSampleIndex} of each given csv asset, next to it with the same name and
+ * a {@code .bin} extension. Run through the {@code poseSampleIndex} task after editing a csv.
+ */
+public final class PoseSampleIndexTool {
+  private PoseSampleIndexTool() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("Usage: PoseSampleIndexTool <samples.csv>...");
+    }
+    for (String csvPath : args) {
+      File csvFile = new File(csvPath);
+      String name = csvFile.getName();
+      File indexFile = new File(csvFile.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".bin");
+      byte[] csv = Files.readAllBytes(csvFile.toPath());
+      int sampleCount;
+      try (OutputStream out = new FileOutputStream(indexFile)) {
+        sampleCount = PoseSampleIndex.write(csv, out);
+      }
+      System.out.println("Wrote " + sampleCount + " samples to " + indexFile);
+    }
+  }
+}
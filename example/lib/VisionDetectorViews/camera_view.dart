@@ -1,3 +1,5 @@
+import 'dart:io';
+
 import 'package:camera/camera.dart';
 import 'package:flutter/foundation.dart';
 import 'package:flutter/material.dart';
@@ -107,12 +109,6 @@ class _CameraViewState extends State<CameraView> {
   }
 
   Future _processCameraImage(CameraImage image) async {
-    final WriteBuffer allBytes = WriteBuffer();
-    for (Plane plane in image.planes) {
-      allBytes.putUint8List(plane.bytes);
-    }
-    final bytes = allBytes.done().buffer.asUint8List();
-
     final Size imageSize =
         Size(image.width.toDouble(), image.height.toDouble());
 
@@ -129,6 +125,7 @@ class _CameraViewState extends State<CameraView> {
       (Plane plane) {
         return InputImagePlaneMetadata(
           bytesPerRow: plane.bytesPerRow,
+          bytesPerPixel: plane.bytesPerPixel,
           height: plane.height,
           width: plane.width,
         );
@@ -142,6 +139,20 @@ class _CameraViewState extends State<CameraView> {
       planeData: planeData,
     );
 
+    // YUV_420_888 planes are assembled natively, which avoids concatenating them here.
+    if (Platform.isAndroid && image.planes.length == 3) {
+      widget.onImage(InputImage.fromPlanes(
+        planes: image.planes.map((Plane plane) => plane.bytes).toList(),
+        inputImageData: inputImageData,
+      ));
+      return;
+    }
+
+    final WriteBuffer allBytes = WriteBuffer();
+    for (Plane plane in image.planes) {
+      allBytes.putUint8List(plane.bytes);
+    }
+    final bytes = allBytes.done().buffer.asUint8List();
     final inputImage =
         InputImage.fromBytes(bytes: bytes, inputImageData: inputImageData);
 
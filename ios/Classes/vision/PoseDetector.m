@@ -5,6 +5,9 @@
 
 #define startPoseDetector @"vision#startPoseDetector"
 #define closePoseDetector @"vision#closePoseDetector"
+// Android only, answered with an error so dart callers fail instead of waiting.
+#define processPoseBatch @"vision#processPoseBatch"
+#define getPoseMetrics @"vision#getPoseMetrics"
 
 @implementation PoseDetector {
     MLKPoseDetector *detector;
@@ -12,13 +15,20 @@
 
 - (NSArray *)getMethodsKeys {
     return @[startPoseDetector,
-             closePoseDetector];
+             closePoseDetector,
+             processPoseBatch,
+             getPoseMetrics];
 }
 
 - (void)handleMethodCall:(FlutterMethodCall *)call result:(FlutterResult)result {
     if ([call.method isEqualToString:startPoseDetector]) {
         [self handleDetection:call result:result];
     } else if ([call.method isEqualToString:closePoseDetector]) {
+    } else if ([call.method isEqualToString:processPoseBatch] ||
+               [call.method isEqualToString:getPoseMetrics]) {
+        result([FlutterError errorWithCode:@"unsupported"
+                                   message:[NSString stringWithFormat:@"%@ is only supported on Android", call.method]
+                                   details:nil]);
     } else {
         result(FlutterMethodNotImplemented);
     }
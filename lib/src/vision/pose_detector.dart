@@ -5,7 +5,7 @@ part of 'vision.dart';
 enum PoseDetectionModel { base, accurate }
 
 // To decide whether you want to process a static image and wait for a future
-// or stream image please note feature to stream image is not yet available and will be implemented in the future
+// or stream camera frames. Stream mode tracks the pose between frames and is faster for live feeds.
 enum PoseDetectionMode { singleImage, streamImage }
 
 enum LandmarkSelectionType { all, specific }
@@ -21,14 +21,27 @@ enum LandmarkSelectionType { all, specific }
 ///   //  Note : [PoseDetectorOptions] is optional parameter,if not given it gives [PoseDetector] with default options
 ///   PoseDetector poseDetector = GoogleMlKit.instance.poseDetector();
 /// ```
+///
+/// Each instance is an independent session on the native side with its own detector,
+/// classification smoothing and rep counts, so several detectors can be used at the same time.
+/// [close] releases only this detector's session. The pose samples used for classification are
+/// loaded once and shared by all sessions.
 class PoseDetector {
   final PoseDetectorOptions poseDetectorOptions;
+  final int _sessionId = _nextSessionId++;
   bool _isOpened = false;
   bool _isClosed = false;
+  int _droppedFrames = 0;
 
   PoseDetector(this.poseDetectorOptions);
 
+  /// Number of streamed frames the native side dropped because newer frames superseded them.
+  int get droppedFrames => _droppedFrames;
+
   /// Process the image and returns a map where key denotes [PoseLandmark] i.e location. Value contains the info of the PoseLandmark i.e
+  ///
+  /// In [PoseDetectionMode.streamImage] a frame may be dropped in favour of a newer one when
+  /// detection can't keep up with the camera, in which case an empty list is returned.
   Future<List<DetectedPose>> processImage({
     required InputImage inputImage,
     required bool useClassifier,
@@ -45,31 +58,177 @@ class PoseDetector {
                 : 'vision#startPoseDetectorWithoutCl',
         <String, dynamic>{
           'options': poseDetectorOptions._detectorOption(),
-          'imageData': inputImage._getImageData()
+          'imageData': inputImage._getImageData(),
+          'sessionId': _sessionId
         });
 
+    if (result is Map && result['dropped'] == true) {
+      _droppedFrames = result['droppedFrames'] ?? _droppedFrames + 1;
+      return [];
+    }
+    return _parsePoses(result);
+  }
+
+  /// Processes a list of images, e.g. the frames of a recorded video, in a single call.
+  ///
+  /// Decoding, detection and classification of consecutive images overlap on the native side,
+  /// which is much faster than calling [processImage] for each image. Results are returned in
+  /// the order of [inputImages]; an image that could not be processed gets an empty list.
+  /// [onProgress] is called with the number of processed images as the batch advances.
+  ///
+  /// Android only, on iOS the returned future fails with a [PlatformException].
+  Future<List<List<DetectedPose>>> processImages({
+    required List<InputImage> inputImages,
+    bool useClassifier = false,
+    bool isActivity = false,
+    void Function(int processed, int total)? onProgress,
+  }) async {
+    _isOpened = true;
+
+    int? batchId;
+    if (onProgress != null) {
+      batchId = _nextBatchId++;
+      _batchProgressCallbacks[batchId] = onProgress;
+      _listenForBatchProgress();
+    }
+
+    try {
+      final result = await Vision.channel.invokeMethod(
+          'vision#processPoseBatch', <String, dynamic>{
+        'options': poseDetectorOptions._detectorOption(),
+        'images': inputImages.map((image) => image._getImageData()).toList(),
+        'classifier': isActivity
+            ? 'activity'
+            : useClassifier
+                ? 'classifier'
+                : 'none',
+        'batchId': batchId,
+      });
+
+      return [
+        for (final imageResult in result)
+          imageResult == null ? <DetectedPose>[] : _parsePoses(imageResult)
+      ];
+    } finally {
+      _batchProgressCallbacks.remove(batchId);
+    }
+  }
+
+  // Session 0 is the native default for callers that don't pass an id.
+  static int _nextSessionId = 1;
+  static int _nextBatchId = 0;
+  static final Map<int, void Function(int, int)> _batchProgressCallbacks = {};
+  static bool _isListeningForBatchProgress = false;
+
+  // Progress is sent on its own channel, so listening doesn't replace any handler set on
+  // [Vision.channel].
+  static const MethodChannel _batchProgressChannel =
+      MethodChannel('google_ml_kit/pose_batch_progress');
+
+  static void _listenForBatchProgress() {
+    if (_isListeningForBatchProgress) return;
+    _isListeningForBatchProgress = true;
+    _batchProgressChannel.setMethodCallHandler((call) async {
+      if (call.method == 'vision#poseBatchProgress') {
+        final args = call.arguments;
+        _batchProgressCallbacks[args['batchId']]
+            ?.call(args['processed'], args['total']);
+      }
+    });
+  }
+
+  static List<DetectedPose> _parsePoses(dynamic result) {
     List<DetectedPose> poses = [];
     // getting each pose
     for (final pose in result) {
       Map<PoseLandmarkType, PoseLandmark> landmarks = {};
-      // getting each landmark point
-      for (final point in pose['landmarks']) {
-        final landmark = PoseLandmark._fromMap(point);
-        landmarks[landmark.type] = landmark;
+      if (pose['packedLandmarks'] != null) {
+        landmarks = _decodePackedLandmarks(pose['packedLandmarks']);
+      } else {
+        // getting each landmark point
+        for (final point in pose['landmarks']) {
+          final landmark = PoseLandmark._fromMap(point);
+          landmarks[landmark.type] = landmark;
+        }
       }
       poses.add(DetectedPose(
         landmarks,
         pose['name'] ?? '',
         pose['accuracy'] ?? 0.0,
         pose['reps'] ?? 0,
+        timings: pose['timings'] == null
+            ? null
+            : Map<String, double>.from(pose['timings']),
+        repsByClass: pose['repsByClass'] == null
+            ? null
+            : Map<String, int>.from(pose['repsByClass']),
+        sets: pose['sets'] == null
+            ? null
+            : [
+                for (final set in pose['sets'])
+                  RepetitionSet(set['name'], set['reps'])
+              ],
+        topClasses: pose['topClasses'] == null
+            ? null
+            : [
+                for (final topClass in pose['topClasses'])
+                  PoseClassAccuracy(topClass['name'], topClass['accuracy'])
+              ],
+        reused: pose['reused'] ?? false,
       ));
     }
     return poses;
   }
 
+  // Number of floats per landmark in the packed layout: x, y, z, likelihood.
+  static const int _packedLandmarkStride = 4;
+
+  /// Decodes landmarks sent with [PoseDetectorOptions.packedResults]: little-endian float32
+  /// values, [_packedLandmarkStride] per landmark, where the landmark at index i has type
+  /// [PoseLandmarkType.values][i].
+  static Map<PoseLandmarkType, PoseLandmark> _decodePackedLandmarks(
+      Uint8List bytes) {
+    final data = ByteData.sublistView(bytes);
+    int count = bytes.lengthInBytes ~/ (_packedLandmarkStride * 4);
+    if (count > PoseLandmarkType.values.length) {
+      count = PoseLandmarkType.values.length;
+    }
+    Map<PoseLandmarkType, PoseLandmark> landmarks = {};
+    for (int i = 0; i < count; i++) {
+      final offset = i * _packedLandmarkStride * 4;
+      final type = PoseLandmarkType.values[i];
+      landmarks[type] = PoseLandmark(
+        type,
+        data.getFloat32(offset, Endian.little),
+        data.getFloat32(offset + 4, Endian.little),
+        data.getFloat32(offset + 8, Endian.little),
+        data.getFloat32(offset + 12, Endian.little),
+      );
+    }
+    return landmarks;
+  }
+
+  /// Returns latency and throughput metrics of the native pose pipeline.
+  ///
+  /// The map holds the counters `framesReceived`, `framesProcessed`, `framesDropped`,
+  /// `framesReused` and `failures`, the throughput `framesPerSecond`, and under `stages` the
+  /// `p50`, `p95` and `p99` latencies in milliseconds of each pipeline stage (conversion,
+  /// inference, filtering, classification, smoothing, repCounting, marshalling) over the most
+  /// recent frames. Under `bufferPool` it holds the `hits` and `misses` of the pool of frame
+  /// buffers the plugin builds before detection, and the `retainedBytes` it keeps.
+  /// Pass [reset] to start counting afresh after reading.
+  ///
+  /// Android only, on iOS the returned future fails with a [PlatformException].
+  Future<Map<String, dynamic>> getMetrics({bool reset = false}) async {
+    final result = await Vision.channel
+        .invokeMethod('vision#getPoseMetrics', <String, dynamic>{'reset': reset});
+    return Map<String, dynamic>.from(result);
+  }
+
   Future<void> close() async {
     if (!_isClosed && _isOpened) {
-      await Vision.channel.invokeMethod('vision#closePoseDetector');
+      await Vision.channel.invokeMethod(
+          'vision#closePoseDetector', <String, dynamic>{'sessionId': _sessionId});
       _isClosed = true;
       _isOpened = false;
     }
@@ -81,19 +240,175 @@ class PoseDetectorOptions {
   /// enum PoseDetectionModel default is set to Base Pose Detector Model.
   final PoseDetectionModel model;
 
-  /// enum PoseDetectionMode, currently only static supported.
+  /// enum PoseDetectionMode default is set to stream mode.
   final PoseDetectionMode mode;
 
+  /// Maximum number of streamed frames processed at the same time. Frames arriving while
+  /// all slots are busy replace each other, only the latest one is processed.
+  final int maxFramesInFlight;
+
+  /// Whether landmarks are sent from the platform as one packed float buffer instead of a map
+  /// per landmark. Cheaper to encode and decode, recommended for camera streams.
+  /// Android only, ignored on iOS.
+  final bool packedResults;
+
+  /// Whether each [DetectedPose] carries the time spent in each pipeline stage.
+  final bool includeTimings;
+
+  /// Rep counting thresholds by pose class, used when processing with `isActivity`.
+  /// Overrides the defaults of the built-in exercises or adds classes to count reps of.
+  /// Android only. Switching a detector between `isActivity` and `useClassifier` restarts its
+  /// classification and rep counts.
+  final Map<String, RepThresholds>? repThresholds;
+
+  /// Temporal filtering of streamed landmarks, applied before classification. Removes the
+  /// jitter between frames at the cost of a little lag. Off when null, Android only.
+  final LandmarkFilterOptions? landmarkFilter;
+
+  /// Skipping of streamed frames while the pose holds still, whose results are then reused from
+  /// the last detected frame and marked with [DetectedPose.reused]. Off when null, Android only.
+  final FrameSkippingOptions? frameSkipping;
+
+  /// Cropping of streamed camera frames to the region around the previous pose before
+  /// detection, which makes detection cheaper when the person fills only part of the frame.
+  /// Landmarks are still reported in full frame coordinates. Off when null, Android only.
+  final RegionOfInterestOptions? regionOfInterest;
+
+  /// Shrinking of camera frames before detection, which makes detection of high resolution
+  /// frames much cheaper. Landmarks are still reported in full frame coordinates. Off when
+  /// null, Android only.
+  final DownscaleOptions? downscale;
+
   PoseDetectorOptions(
       {this.model = PoseDetectionModel.base,
-      this.mode = PoseDetectionMode.streamImage});
+      this.mode = PoseDetectionMode.streamImage,
+      this.maxFramesInFlight = 2,
+      this.packedResults = false,
+      this.includeTimings = false,
+      this.repThresholds,
+      this.landmarkFilter,
+      this.frameSkipping,
+      this.regionOfInterest,
+      this.downscale});
 
   Map<String, dynamic> _detectorOption() => <String, dynamic>{
         'type': model == PoseDetectionModel.base ? 'base' : 'accurate',
         'mode': mode == PoseDetectionMode.singleImage ? "single" : "stream",
+        'maxFramesInFlight': maxFramesInFlight,
+        'packedResults': packedResults,
+        'includeTimings': includeTimings,
+        if (repThresholds != null)
+          'repThresholds': repThresholds!.map((className, thresholds) =>
+              MapEntry(className, thresholds._toMap())),
+        if (landmarkFilter != null) 'landmarkFilter': landmarkFilter!._toMap(),
+        if (frameSkipping != null) 'frameSkipping': frameSkipping!._toMap(),
+        if (regionOfInterest != null)
+          'regionOfInterest': regionOfInterest!._toMap(),
+        if (downscale != null) 'downscale': downscale!._toMap(),
       };
 }
 
+/// Confidences for counting reps of a pose class. The pose is entered once the class
+/// confidence exceeds [enter], and a rep is counted when it falls below [exit] again.
+/// Confidences range from 0 to 10, the number of nearest samples of the class.
+class RepThresholds {
+  final double enter;
+  final double exit;
+
+  const RepThresholds({this.enter = 6, this.exit = 4});
+
+  Map<String, dynamic> _toMap() => <String, dynamic>{'enter': enter, 'exit': exit};
+}
+
+/// Parameters of the One-Euro filter smoothing each landmark coordinate over time.
+/// Lower [minCutoff] (Hz) removes more jitter of still landmarks, higher [beta] reduces the lag
+/// of moving ones. [derivativeCutoff] (Hz) smooths the speed estimate. Landmarks with a low
+/// in-frame likelihood are trusted less and lean on their filtered history.
+class LandmarkFilterOptions {
+  final double minCutoff;
+  final double beta;
+  final double derivativeCutoff;
+
+  const LandmarkFilterOptions(
+      {this.minCutoff = 1.0, this.beta = 0.007, this.derivativeCutoff = 1.0});
+
+  Map<String, dynamic> _toMap() => <String, dynamic>{
+        'minCutoff': minCutoff,
+        'beta': beta,
+        'derivativeCutoff': derivativeCutoff
+      };
+}
+
+/// Budgets of skipping frames while the pose holds still, e.g. during a plank.
+///
+/// The pose counts as still once the mean landmark movement between detected frames stayed
+/// below [motionThreshold], a fraction of the pose size, for [settleFrames] detected frames.
+/// Lowering the threshold or raising [settleFrames] trades battery for quality. While still,
+/// up to [maxReusedFrames] frames in a row reuse the last result, so only one frame in
+/// `maxReusedFrames + 1` is detected and classified. Movement is noticed on the next detected
+/// frame, after which every frame is detected again.
+class FrameSkippingOptions {
+  final double motionThreshold;
+  final int settleFrames;
+  final int maxReusedFrames;
+
+  const FrameSkippingOptions(
+      {this.motionThreshold = 0.02,
+      this.settleFrames = 5,
+      this.maxReusedFrames = 2});
+
+  Map<String, dynamic> _toMap() => <String, dynamic>{
+        'motionThreshold': motionThreshold,
+        'settleFrames': settleFrames,
+        'maxReusedFrames': maxReusedFrames
+      };
+}
+
+/// Region of interest cropping. The region is the bounding box of the previous pose with
+/// [padding] added on every side, relative to the larger side of the box. It follows the pose
+/// when it gets close to the region's edge, and the full frame is used when the pose is lost or
+/// the region would cover most of the frame. Applies to `bytes` and `planes` images only.
+class RegionOfInterestOptions {
+  final double padding;
+
+  const RegionOfInterestOptions({this.padding = 0.25});
+
+  Map<String, dynamic> _toMap() => <String, dynamic>{'padding': padding};
+}
+
+/// Downscaling of `bytes` and `planes` images. Frames, or their region of interest, are
+/// shrunk by the largest whole factor keeping their long edge at least [targetLongEdge] pixels,
+/// averaging each box of pixels. With [normalizeRotation] frames are also rotated upright in
+/// the same pass.
+class DownscaleOptions {
+  final int targetLongEdge;
+  final bool normalizeRotation;
+
+  const DownscaleOptions(
+      {this.targetLongEdge = 640, this.normalizeRotation = true});
+
+  Map<String, dynamic> _toMap() => <String, dynamic>{
+        'targetLongEdge': targetLongEdge,
+        'normalizeRotation': normalizeRotation
+      };
+}
+
+/// A pose class with its accuracy, the share of the nearest pose samples belonging to it.
+class PoseClassAccuracy {
+  PoseClassAccuracy(this.name, this.accuracy);
+
+  final String name;
+  final double accuracy;
+}
+
+/// Consecutive reps of one pose class.
+class RepetitionSet {
+  RepetitionSet(this.name, this.reps);
+
+  final String name;
+  final int reps;
+}
+
 /// Available pose landmarks detected by [PoseDetector].
 enum PoseLandmarkType {
   nose,
@@ -136,14 +451,42 @@ class DetectedPose {
     this.landmarks,
     this.name,
     this.accuracy,
-    this.reps,
-  );
+    this.reps, {
+    this.timings,
+    this.repsByClass,
+    this.sets,
+    this.topClasses,
+    this.reused = false,
+  });
 
   final Map<PoseLandmarkType, PoseLandmark> landmarks;
   final String name;
   final double accuracy;
+
+  /// Reps of the exercise currently performed, i.e. the class of the latest rep, counted over
+  /// all its sets. Earlier versions counted every rep of any class in one shared total; use
+  /// [repsByClass] for a single class or [sets] for the current set.
   final int reps;
 
+  /// Reps of every counted pose class, when processing with `isActivity`.
+  final Map<String, int>? repsByClass;
+
+  /// Sets performed so far in order, the last one being the current set, when processing with
+  /// `isActivity`. A set ends when a rep of another class is counted.
+  final List<RepetitionSet>? sets;
+
+  /// The most likely pose classes, most likely first, when processing with a classifier.
+  /// [name] and [accuracy] are those of the first one.
+  final List<PoseClassAccuracy>? topClasses;
+
+  /// Whether this result was reused from an earlier frame instead of detecting this one, see
+  /// [PoseDetectorOptions.frameSkipping].
+  final bool reused;
+
+  /// Time in milliseconds spent in each pipeline stage for this frame, when requested with
+  /// [PoseDetectorOptions.includeTimings].
+  final Map<String, double>? timings;
+
   // factory Pose._fromMap(Map<dynamic, dynamic> data) {
   //   return Pose(
   //     data['landmarks'],
@@ -81,10 +81,12 @@ class InputImage {
   InputImage._(
       {String? filePath,
       Uint8List? bytes,
+      List<Uint8List>? planes,
       required String imageType,
       InputImageData? inputImageData})
       : filePath = filePath,
         bytes = bytes,
+        planes = planes,
         imageType = imageType,
         inputImageData = inputImageData;
 
@@ -105,14 +107,28 @@ class InputImage {
         bytes: bytes, imageType: 'bytes', inputImageData: inputImageData);
   }
 
+  /// Create InputImage from the separate Y, U and V planes of a YUV_420_888 camera image.
+  ///
+  /// The planes are sent as they are and assembled natively using the row and pixel strides in
+  /// [InputImageData.planeData], which saves concatenating them in dart. Android only.
+  factory InputImage.fromPlanes(
+      {required List<Uint8List> planes,
+      required InputImageData inputImageData}) {
+    assert(planes.length == 3 && inputImageData.planeData?.length == 3);
+    return InputImage._(
+        planes: planes, imageType: 'planes', inputImageData: inputImageData);
+  }
+
   final String? filePath;
   final Uint8List? bytes;
+  final List<Uint8List>? planes;
   final String imageType;
   final InputImageData? inputImageData;
 
   Map<String, dynamic> _getImageData() {
     var map = <String, dynamic>{
       'bytes': bytes,
+      'planes': planes,
       'type': imageType,
       'path': filePath,
       'metadata':
@@ -166,6 +182,7 @@ class InputImageData {
 class InputImagePlaneMetadata {
   InputImagePlaneMetadata({
     required this.bytesPerRow,
+    this.bytesPerPixel,
     this.height,
     this.width,
   });
@@ -173,6 +190,11 @@ class InputImagePlaneMetadata {
   /// The row stride for this color plane, in bytes.
   final int bytesPerRow;
 
+  /// The distance between adjacent pixel samples in this plane, in bytes.
+  ///
+  /// Required for the chroma planes of [InputImage.fromPlanes].
+  final int? bytesPerPixel;
+
   /// Height of the pixel buffer on iOS.
   final int? height;
 
@@ -181,6 +203,7 @@ class InputImagePlaneMetadata {
 
   Map<String, dynamic> _serialize() => <String, dynamic>{
         'bytesPerRow': bytesPerRow,
+        'bytesPerPixel': bytesPerPixel,
         'height': height,
         'width': width,
       };